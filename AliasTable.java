@@ -0,0 +1,90 @@
+/* Walker's alias table, built with Vose's method, for drawing slot i with probability weight[i] / total */
+/* Building is O(n) and each draw is O(1), taking one uniform int and one uniform double */
+/* A table is rebuilt in place, so one table can be reused without allocating once it has grown */
+
+public class AliasTable {
+
+	// fields
+	private double[] probability = new double[0];		// chance of keeping slot i rather than taking its alias
+	private int[] alias = new int[0];
+	private int[] small = new int[0];					// work lists used while building
+	private int[] large = new int[0];
+	private int size = 0;
+	private double total = 0.0;
+
+	// methods
+
+	public int size() {
+		return size;
+	}
+
+	public double getTotal() {
+		return total;
+	}
+
+	// rebuild from the first n entries of weights, which must be non-negative
+	public void build(double[] weights, int n) {
+
+		if (probability.length < n) {
+			int capacity = Math.max(n, 2 * probability.length);
+			probability = new double[capacity];
+			alias = new int[capacity];
+			small = new int[capacity];
+			large = new int[capacity];
+		}
+		size = n;
+		total = 0.0;
+		for (int i = 0; i < n; i++) {
+			total += weights[i];
+		}
+		if (total <= 0.0) {
+			return;
+		}
+
+		// scale so that the mean weight is 1, then pair each slot below 1 with one above
+		int smallCount = 0;
+		int largeCount = 0;
+		for (int i = 0; i < n; i++) {
+			probability[i] = weights[i] * n / total;
+			alias[i] = i;
+			if (probability[i] < 1.0) {
+				small[smallCount] = i;
+				smallCount++;
+			} else {
+				large[largeCount] = i;
+				largeCount++;
+			}
+		}
+		while (smallCount > 0 && largeCount > 0) {
+			smallCount--;
+			int s = small[smallCount];
+			int l = large[largeCount - 1];
+			alias[s] = l;
+			probability[l] -= 1.0 - probability[s];
+			if (probability[l] < 1.0) {
+				largeCount--;
+				small[smallCount] = l;
+				smallCount++;
+			}
+		}
+
+		// whatever is left over is 1 up to rounding
+		for (int i = 0; i < smallCount; i++) {
+			probability[small[i]] = 1.0;
+		}
+		for (int i = 0; i < largeCount; i++) {
+			probability[large[i]] = 1.0;
+		}
+
+	}
+
+	// slot drawn in proportion to its weight, only valid when getTotal() > 0
+	public int sample(RandomStream random) {
+		int i = random.nextInt(0, size - 1);
+		if (random.nextDouble() < probability[i]) {
+			return i;
+		}
+		return alias[i];
+	}
+
+}
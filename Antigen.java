@@ -5,11 +5,17 @@ import java.io.FileNotFoundException;
 class Antigen {
     public static void main(String[] args) throws FileNotFoundException {
 
-		// initialize random number generator
-		cern.jet.random.AbstractDistribution.makeDefaultGenerator();
-		
 		// initialize static parameters
-		Parameters.load();		
+		Parameters.load();
+
+		// initialize random number generator
+		long seed = Parameters.seed;
+		if (seed == 0) {
+			seed = System.nanoTime();
+		}
+		System.out.println("Random seed: " + seed);
+		Random.setSeed(seed);
+
 		Parameters.initialize();
 		
 		// run simulation
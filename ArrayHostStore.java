@@ -0,0 +1,195 @@
+/* Hosts stored as integer handles into primitive columns, rather than one object each */
+/* A handle's infection is its Genealogy node, and its immune history the id of an interned ImmuneHistory */
+/* shared with every other handle holding the same history */
+/* Virus and Host objects are only built on request, as views for code that still works on them */
+
+import java.util.*;
+
+public class ArrayHostStore implements HostStore {
+
+	// fields
+	private int[] infection = new int[0];				// Genealogy node of each handle's infection, Genealogy.NONE if not infected
+	private int[] history = new int[0];					// id under root of each handle's immune history, -1 if unused
+	private int handleCount = 0;						// handles ever issued
+	private int[] free = new int[0];					// released handles, reused before new ones are issued
+	private int freeCount = 0;
+
+	private int[][] members = new int[3][0];			// handles in each compartment, dense
+	private int[] sizes = new int[3];
+	private ImmuneHistory root = new ImmuneHistory();	// histories of this store's hosts are interned here
+
+	// methods
+
+	public int size(int c) {
+		return sizes[c];
+	}
+
+	public void addNaive(int c) {
+		int h = newHandle();
+		infection[h] = Genealogy.NONE;
+		history[h] = root.retain().getId();
+		initializeHistory(h);
+		join(c, h);
+	}
+
+	public void addInfected(Virus v) {
+		int h = newHandle();
+		infection[h] = v.getNode();
+		history[h] = root.retain().getId();
+		initializeHistory(h);
+		join(INFECTED, h);
+	}
+
+	public void add(int c, Host host) {
+		int h = newHandle();
+		infection[h] = (host.getInfection() == null) ? Genealogy.NONE : host.getInfection().getNode();
+		history[h] = root.intern(host.getHistory()).getId();
+		join(c, h);
+	}
+
+	public void remove(int c, int i) {
+		int h = leave(c, i);
+		release(h);
+	}
+
+	public void move(int from, int i, int to) {
+		int h = leave(from, i);
+		join(to, h);
+	}
+
+	public void reset(int c, int i) {
+		int h = members[c][i];
+		infection[h] = Genealogy.NONE;
+		history[h] = root.get(history[h]).clear().getId();
+	}
+
+	public Virus getInfection(int i) {
+		int h = members[INFECTED][i];
+		return Virus.of(infection[h]);
+	}
+
+	public int getInfectionNode(int i) {
+		int h = members[INFECTED][i];
+		return infection[h];
+	}
+
+	public void infect(int i, int parent, int deme) {
+		int h = members[SUSCEPTIBLE][i];
+		infection[h] = Genealogy.add(parent, deme, Genealogy.getPhenotype(parent), Parameters.getDate());
+		move(SUSCEPTIBLE, i, INFECTED);
+	}
+
+	// as Virus.mutate, without building a view of the parent
+	public Virus mutate(int i) {
+		int h = members[INFECTED][i];
+		int parent = infection[h];
+		Phenotype p = Genealogy.getPhenotype(parent).mutate();
+		infection[h] = Genealogy.add(parent, Genealogy.getDeme(parent), p, Parameters.getDate());
+		return Virus.of(infection[h]);
+	}
+
+	public void recover(int i, int to) {
+		int h = members[INFECTED][i];
+		history[h] = root.get(history[h]).add(Genealogy.getPhenotype(infection[h])).getId();
+		infection[h] = Genealogy.NONE;
+		move(INFECTED, i, to);
+	}
+
+	public double riskOfInfection(Phenotype p, int c, int i) {
+		int h = members[c][i];
+		return root.get(history[h]).riskOfInfection(p);
+	}
+
+	public int getHistoryLength(int c, int i) {
+		int h = members[c][i];
+		return root.get(history[h]).length();
+	}
+
+	// remove random phenotype from host's immune profile, do nothing if empty
+	public void waneImmunity(int c, int i) {
+		int h = members[c][i];
+		ImmuneHistory node = root.get(history[h]);
+		int length = node.length();
+		if (length > 0) {
+			int remove = Random.nextInt(0, length-1);
+			history[h] = node.remove(remove).getId();
+		}
+	}
+
+	public ImmuneHistory getImmuneHistory(int c, int i) {
+		int h = members[c][i];
+		return root.get(history[h]);
+	}
+
+	public ImmuneHistory getHistoryRoot() {
+		return root;
+	}
+
+	public Host getHost(int c, int i) {
+		int h = members[c][i];
+		return new Host(Virus.of(infection[h]), root.get(history[h]).getPhenotypes());
+	}
+
+	public void clear() {
+		infection = new int[0];
+		history = new int[0];
+		handleCount = 0;
+		freeCount = 0;
+		sizes = new int[3];
+		root = new ImmuneHistory();
+	}
+
+	// sometimes start with immunity, drawing as Host does
+	private void initializeHistory(int h) {
+		double chanceOfSuccess = Parameters.initialPrR;
+		if (Random.nextBoolean(chanceOfSuccess)) {
+			history[h] = root.get(history[h]).add(Parameters.urImmunity).getId();
+		}
+	}
+
+	// handles
+
+	private int newHandle() {
+		if (freeCount > 0) {
+			freeCount--;
+			return free[freeCount];
+		}
+		if (handleCount == history.length) {
+			int capacity = Math.max(16, 2 * handleCount);
+			infection = Arrays.copyOf(infection, capacity);
+			history = Arrays.copyOf(history, capacity);
+		}
+		int h = handleCount;
+		handleCount++;
+		return h;
+	}
+
+	private void release(int h) {
+		infection[h] = Genealogy.NONE;
+		root.get(history[h]).release();
+		history[h] = -1;
+		if (freeCount == free.length) {
+			free = Arrays.copyOf(free, Math.max(16, 2 * freeCount));
+		}
+		free[freeCount] = h;
+		freeCount++;
+	}
+
+	// append handle h to compartment c
+	private void join(int c, int h) {
+		if (sizes[c] == members[c].length) {
+			members[c] = Arrays.copyOf(members[c], Math.max(16, 2 * sizes[c]));
+		}
+		members[c][sizes[c]] = h;
+		sizes[c]++;
+	}
+
+	// take entry i out of compartment c by moving the last entry into its place, returning its handle
+	private int leave(int c, int i) {
+		int h = members[c][i];
+		sizes[c]--;
+		members[c][i] = members[c][sizes[c]];
+		return h;
+	}
+
+}
@@ -113,7 +113,7 @@ public class Biology {
             double[] transitionTransversion = this.transitionTranversionProbability.get(originalNucleotideToMutate);
 
             // Choose a random number between 0-1
-            double randomNum = Math.random();
+            double randomNum = Random.nextDouble();
             int indexAlphabet = 0;
 
             for (int i = 0; i < 4; i++) {
@@ -0,0 +1,245 @@
+/* Hosts stored as counts per immune history, rather than individually */
+/* Susceptible and recovered hosts with the same interned ImmuneHistory form a class holding only a count */
+/* Host i of such a compartment is the i-th unit counting through its classes, found with a FenwickTree over class counts */
+/* so a uniformly drawn index picks a class in proportion to its size, and memory scales with the number of distinct histories */
+/* Infected hosts carry their own virus and are kept individually */
+
+import java.util.*;
+
+public class ClassHostStore implements HostStore {
+
+	// fields
+	private ImmuneHistory root = new ImmuneHistory();			// histories of this store's hosts are interned here
+	private Compartment[] classes = {new Compartment(), null, new Compartment()};
+
+	private Virus[] infection = new Virus[0];					// infected hosts, dense
+	private ImmuneHistory[] infectedHistory = new ImmuneHistory[0];
+	private int infectedCount = 0;
+
+	// methods
+
+	public int size(int c) {
+		if (c == INFECTED) {
+			return infectedCount;
+		}
+		return classes[c].counts.getTotal();
+	}
+
+	public void addNaive(int c) {
+		ImmuneHistory history = root.retain();
+		history = initializeHistory(history);
+		insert(c, null, history);
+	}
+
+	public void addInfected(Virus v) {
+		ImmuneHistory history = root.retain();
+		history = initializeHistory(history);
+		insert(INFECTED, v, history);
+	}
+
+	public void add(int c, Host h) {
+		ImmuneHistory history = root.intern(h.getHistory());
+		insert(c, h.getInfection(), history);
+	}
+
+	public void remove(int c, int i) {
+		ImmuneHistory history = take(c, i);
+		history.release();
+	}
+
+	public void move(int from, int i, int to) {
+		Virus v = null;
+		if (from == INFECTED) {
+			v = infection[i];
+		}
+		ImmuneHistory history = take(from, i);
+		insert(to, v, history);
+	}
+
+	public void reset(int c, int i) {
+		if (c == INFECTED) {
+			infection[i] = null;
+			infectedHistory[i] = infectedHistory[i].clear();
+		} else {
+			ImmuneHistory history = take(c, i);
+			insert(c, null, history.clear());
+		}
+	}
+
+	public Virus getInfection(int i) {
+		return infection[i];
+	}
+
+	public int getInfectionNode(int i) {
+		return infection[i].getNode();
+	}
+
+	public void infect(int i, int parent, int deme) {
+		ImmuneHistory history = take(SUSCEPTIBLE, i);
+		insert(INFECTED, new Virus(Virus.of(parent), deme), history);
+	}
+
+	public Virus mutate(int i) {
+		infection[i] = infection[i].mutate();
+		return infection[i];
+	}
+
+	public void recover(int i, int to) {
+		Phenotype p = infection[i].getPhenotype();
+		ImmuneHistory history = take(INFECTED, i);
+		insert(to, null, history.add(p));
+	}
+
+	public double riskOfInfection(Phenotype p, int c, int i) {
+		return getHistory(c, i).riskOfInfection(p);
+	}
+
+	public int getHistoryLength(int c, int i) {
+		return getHistory(c, i).length();
+	}
+
+	// remove random phenotype from host's immune profile, do nothing if empty
+	public void waneImmunity(int c, int i) {
+		int length = getHistory(c, i).length();
+		if (length > 0) {
+			int remove = Random.nextInt(0, length-1);
+			if (c == INFECTED) {
+				infectedHistory[i] = infectedHistory[i].remove(remove);
+			} else {
+				ImmuneHistory history = take(c, i);
+				insert(c, null, history.remove(remove));
+			}
+		}
+	}
+
+	public ImmuneHistory getImmuneHistory(int c, int i) {
+		return getHistory(c, i);
+	}
+
+	public ImmuneHistory getHistoryRoot() {
+		return root;
+	}
+
+	public Host getHost(int c, int i) {
+		Virus v = null;
+		if (c == INFECTED) {
+			v = infection[i];
+		}
+		return new Host(v, getHistory(c, i).getPhenotypes());
+	}
+
+	public void clear() {
+		root = new ImmuneHistory();
+		classes[SUSCEPTIBLE] = new Compartment();
+		classes[RECOVERED] = new Compartment();
+		infection = new Virus[0];
+		infectedHistory = new ImmuneHistory[0];
+		infectedCount = 0;
+	}
+
+	// number of distinct histories held in compartment c, infecteds count one each
+	public int getClassCount(int c) {
+		if (c == INFECTED) {
+			return infectedCount;
+		}
+		return classes[c].index.size();
+	}
+
+	// sometimes start with immunity, drawing as Host does
+	private ImmuneHistory initializeHistory(ImmuneHistory history) {
+		double chanceOfSuccess = Parameters.initialPrR;
+		if (Random.nextBoolean(chanceOfSuccess)) {
+			history = history.add(Parameters.urImmunity);
+		}
+		return history;
+	}
+
+	private ImmuneHistory getHistory(int c, int i) {
+		if (c == INFECTED) {
+			return infectedHistory[i];
+		}
+		Compartment compartment = classes[c];
+		return compartment.history[compartment.counts.find(i)];
+	}
+
+	// add a host with this history, taking over the caller's reference to it
+	private void insert(int c, Virus v, ImmuneHistory history) {
+		if (c == INFECTED) {
+			if (infectedCount == infection.length) {
+				int capacity = Math.max(16, 2 * infectedCount);
+				infection = Arrays.copyOf(infection, capacity);
+				infectedHistory = Arrays.copyOf(infectedHistory, capacity);
+			}
+			infection[infectedCount] = v;
+			infectedHistory[infectedCount] = history;
+			infectedCount++;
+		} else {
+			classes[c].add(history);
+		}
+	}
+
+	// remove host i of compartment c, handing its reference to its history to the caller
+	private ImmuneHistory take(int c, int i) {
+		if (c == INFECTED) {
+			ImmuneHistory history = infectedHistory[i];
+			infectedCount--;
+			infection[i] = infection[infectedCount];
+			infectedHistory[i] = infectedHistory[infectedCount];
+			infection[infectedCount] = null;
+			infectedHistory[infectedCount] = null;
+			return history;
+		}
+		Compartment compartment = classes[c];
+		return compartment.remove(compartment.counts.find(i));
+	}
+
+	// classes of one compartment, each an interned history and a count of the hosts holding it
+	// a class holds one reference to its history per host, slots of emptied classes are reused
+	private static class Compartment {
+
+		private Map<ImmuneHistory, Integer> index = new HashMap<>();	// slot of each history
+		private ImmuneHistory[] history = new ImmuneHistory[0];
+		private FenwickTree counts = new FenwickTree();
+		private int[] free = new int[0];
+		private int freeCount = 0;
+
+		void add(ImmuneHistory h) {
+			Integer slot = index.get(h);
+			if (slot == null) {
+				slot = newSlot();
+				history[slot] = h;
+				index.put(h, slot);
+			}
+			counts.add(slot, 1);
+		}
+
+		ImmuneHistory remove(int slot) {
+			ImmuneHistory h = history[slot];
+			counts.add(slot, -1);
+			if (counts.get(slot) == 0) {
+				index.remove(h);
+				history[slot] = null;
+				if (freeCount == free.length) {
+					free = Arrays.copyOf(free, Math.max(16, 2 * freeCount));
+				}
+				free[freeCount] = slot;
+				freeCount++;
+			}
+			return h;
+		}
+
+		private int newSlot() {
+			if (freeCount > 0) {
+				freeCount--;
+				return free[freeCount];
+			}
+			int slot = index.size();
+			if (slot == history.length) {
+				history = Arrays.copyOf(history, Math.max(16, 2 * slot));
+			}
+			return slot;
+		}
+
+	}
+
+}
@@ -0,0 +1,166 @@
+/* Directed, weighted network of contacts between demes, held in compressed sparse row form */
+/* An edge from source to target lets infecteds of source contact susceptibles of target */
+/* at betweenDemePro times the edge weight, relative to within-deme beta */
+/* Edges are grouped by target, and within a target ordered by source, numbered 0 to getEdgeCount()-1 */
+/* Without a network file every ordered pair of distinct demes is joined with weight 1 */
+
+import java.util.*;
+import java.io.*;
+
+public class DemeNetwork {
+
+	// fields
+	private int demeCount;
+	private int[] inStart;			// incoming edges of deme d are inStart[d] to inStart[d+1]-1
+	private int[] source;			// source deme of each edge
+	private int[] target;			// target deme of each edge
+	private double[] weight;		// relative contact rate of each edge
+	private int[] outStart;			// outgoing edges of deme d are outEdge[outStart[d]] to outEdge[outStart[d+1]-1]
+	private int[] outEdge;
+
+	// constructor
+
+	// every ordered pair of distinct demes, with weight 1
+	public DemeNetwork(int demeCount) {
+		this(demeCount, completeEdges(demeCount));
+	}
+
+	// edges given as rows of source, target and weight, in any order
+	// a repeated pair is summed into one edge, self-loops and zero weights are dropped
+	private DemeNetwork(int demeCount, List<double[]> rows) {
+
+		this.demeCount = demeCount;
+
+		Map<Long, Double> merged = new TreeMap<>();
+		for (double[] row : rows) {
+			int s = (int) row[0];
+			int t = (int) row[1];
+			if (s != t && row[2] != 0.0) {
+				long key = (long) t * demeCount + s;		// orders edges by target, then source
+				merged.merge(key, row[2], Double::sum);
+			}
+		}
+
+		int edges = merged.size();
+		inStart = new int[demeCount + 1];
+		source = new int[edges];
+		target = new int[edges];
+		weight = new double[edges];
+		int e = 0;
+		for (Map.Entry<Long, Double> entry : merged.entrySet()) {
+			long key = entry.getKey();
+			target[e] = (int) (key / demeCount);
+			source[e] = (int) (key % demeCount);
+			weight[e] = entry.getValue();
+			inStart[target[e] + 1]++;
+			e++;
+		}
+		for (int d = 0; d < demeCount; d++) {
+			inStart[d + 1] += inStart[d];
+		}
+
+		// transpose, keeping outgoing edges of each deme in edge order
+		outStart = new int[demeCount + 1];
+		for (int i = 0; i < edges; i++) {
+			outStart[source[i] + 1]++;
+		}
+		for (int d = 0; d < demeCount; d++) {
+			outStart[d + 1] += outStart[d];
+		}
+		outEdge = new int[edges];
+		int[] next = Arrays.copyOf(outStart, demeCount);
+		for (int i = 0; i < edges; i++) {
+			outEdge[next[source[i]]] = i;
+			next[source[i]]++;
+		}
+
+	}
+
+	// methods
+
+	// read a network for demeCount demes from a csv file with one edge per line as source,target,weight
+	// demes are numbered from 0, blank lines, lines starting with # and a non-numeric header line are skipped
+	// throws IOException, after printing the offending line, if the file is missing or malformed
+	public static DemeNetwork read(String file, int demeCount) throws IOException {
+		List<double[]> rows = new ArrayList<>();
+		Scanner scanner = new Scanner(new File(file));
+		int lineNumber = 0;
+		while (scanner.hasNextLine()) {
+			String line = scanner.nextLine().trim();
+			lineNumber++;
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split(",");
+			if (lineNumber == 1 && !fields[0].trim().isEmpty() && !Character.isDigit(fields[0].trim().charAt(0))) {
+				continue;
+			}
+			if (fields.length != 3) {
+				System.out.println("Line " + lineNumber + " of " + file + " should hold source,target,weight");
+				throw new IOException();
+			}
+			int s, t;
+			double w;
+			try {
+				s = Integer.parseInt(fields[0].trim());
+				t = Integer.parseInt(fields[1].trim());
+				w = Double.parseDouble(fields[2].trim());
+			} catch (NumberFormatException ex) {
+				System.out.println("Line " + lineNumber + " of " + file + " should hold source,target,weight as numbers");
+				throw new IOException();
+			}
+			if (s < 0 || s >= demeCount || t < 0 || t >= demeCount || w < 0.0) {
+				System.out.println("Line " + lineNumber + " of " + file + " names a deme outside 0.." + (demeCount - 1) + " or a negative weight");
+				throw new IOException();
+			}
+			rows.add(new double[] {s, t, w});
+		}
+		scanner.close();
+		return new DemeNetwork(demeCount, rows);
+	}
+
+	public int getDemeCount() {
+		return demeCount;
+	}
+
+	public int getEdgeCount() {
+		return source.length;
+	}
+
+	// incoming edges of deme d are getInStart(d) to getInStart(d+1)-1
+	public int getInStart(int d) {
+		return inStart[d];
+	}
+
+	// outgoing edges of deme d are getOutEdge(k) for getOutStart(d) <= k < getOutStart(d+1)
+	public int getOutStart(int d) {
+		return outStart[d];
+	}
+
+	public int getOutEdge(int k) {
+		return outEdge[k];
+	}
+
+	public int getSource(int e) {
+		return source[e];
+	}
+
+	public int getTarget(int e) {
+		return target[e];
+	}
+
+	public double getWeight(int e) {
+		return weight[e];
+	}
+
+	private static List<double[]> completeEdges(int demeCount) {
+		List<double[]> rows = new ArrayList<>();
+		for (int t = 0; t < demeCount; t++) {
+			for (int s = 0; s < demeCount; s++) {
+				rows.add(new double[] {s, t, 1.0});
+			}
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,94 @@
+/* Fenwick (binary indexed) tree over non-negative int counts */
+/* Supports changing a count, prefix sums and finding the slot that holds the k-th unit, each in O(log n) */
+/* Grows as slots are added, slots are indexed from 0 */
+
+import java.util.*;
+
+public class FenwickTree {
+
+	// fields
+	private int[] tree = new int[1];		// 1-based partial sums, tree[0] unused
+	private int[] counts = new int[0];		// count of each slot
+	private int total = 0;
+
+	// methods
+
+	// slots the tree has room for, including ones never set, which count 0
+	public int capacity() {
+		return counts.length;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int get(int i) {
+		return counts[i];
+	}
+
+	// add delta to the count of slot i, growing the tree if i is beyond its end
+	public void add(int i, int delta) {
+		if (i >= counts.length) {
+			grow(i + 1);
+		}
+		counts[i] += delta;
+		total += delta;
+		for (int k = i + 1; k < tree.length; k += k & -k) {
+			tree[k] += delta;
+		}
+	}
+
+	// set the count of slot i, growing the tree if i is beyond its end
+	public void set(int i, int count) {
+		int current = 0;
+		if (i < counts.length) {
+			current = counts[i];
+		}
+		add(i, count - current);
+	}
+
+	// total count of slots 0 to i-1
+	public int prefixSum(int i) {
+		int sum = 0;
+		for (int k = i; k > 0; k -= k & -k) {
+			sum += tree[k];
+		}
+		return sum;
+	}
+
+	// slot holding unit k, counting units from 0 in slot order, for 0 <= k < total
+	public int find(int k) {
+		int position = 0;
+		int step = Integer.highestOneBit(tree.length - 1);
+		for (; step > 0; step >>= 1) {
+			int next = position + step;
+			if (next < tree.length && tree[next] <= k) {
+				position = next;
+				k -= tree[next];
+			}
+		}
+		return position;
+	}
+
+	public void clear() {
+		tree = new int[1];
+		counts = new int[0];
+		total = 0;
+	}
+
+	// rebuild with room for at least n slots
+	private void grow(int n) {
+		int capacity = Math.max(n, 2 * counts.length);
+		counts = Arrays.copyOf(counts, capacity);
+		tree = new int[capacity + 1];
+		for (int i = 0; i < capacity; i++) {
+			int k = i + 1;
+			tree[k] += counts[i];
+			int parent = k + (k & -k);
+			if (parent <= capacity) {
+				tree[parent] += tree[k];
+			}
+		}
+	}
+
+}
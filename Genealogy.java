@@ -0,0 +1,403 @@
+/* Ancestry of every virus, held as int nodes in columns of primitives rather than as linked objects */
+/* Virus is a view of one node, the columns hold its parent, birth, phenotype, fitness and flags */
+/* Columns are split into chunks that never move, each chunk belonging to one deme, chunk c to deme c % demeCount */
+/* so demes stepped in parallel create nodes without locking, node numbers do not depend on thread timing, */
+/* and the deme of a node follows from its number */
+/* Children, layout and coverage only exist for the sampled tree built at the end of the run, and are kept aside from the columns */
+/* Nodes with no living infection or sampled tip below them are swept now and then, and handed out again by their deme */
+/* Each node also holds its depth and a jump pointer to an ancestor, set when it is created, so that common ancestors */
+/* and ancestors at a given depth are found in O(log depth) steps, following the skew-binary jump pointers of Myers (1983) */
+/* Completely static class, allows no instances to be instantiated */
+
+import java.util.*;
+
+public class Genealogy {
+
+	public static final int NONE = -1;							// parent of a root
+
+	private static final int CHUNK_SHIFT = 14;					// 16384 nodes per chunk
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+	private static final byte MARKED = 1;
+	private static final byte TRUNK = 2;
+	private static final byte FREE = 4;							// not in use, either never handed out or swept
+	private static final byte KEPT = 8;							// the following only during a sweep: reached from a kept node
+	private static final byte PINNED = 16;						// kept, or parent of a kept node, so never collapsed
+	private static final byte CHILD = 32;						// at least one kept child
+	private static final byte CHILDREN = 64;					// more than one kept child
+	private static final byte COLLAPSED = (byte) 128;
+	private static final byte SWEEP = KEPT | PINNED | CHILD | CHILDREN | COLLAPSED;
+
+	// fields
+	private static volatile Chunk[] chunks = new Chunk[0];
+	private static int stride = 0;								// demes sharing out the chunks, fixed by the first node
+	private static int[] chunkCount = new int[0];				// per deme, chunks it holds
+	private static int[] next = new int[0];						// per deme, node it hands out next, a multiple of the chunk size when it needs a chunk
+	private static int[] free = new int[0];						// per deme, first swept node, linked to the others through their parents
+	private static Map<Integer, TreeNode> tree = new HashMap<>();	// nodes of the sampled tree
+	private static int[] stack = new int[64];					// ancestors waiting to be relinked after a sweep
+
+	// methods
+
+	// a new node, born on birth in deme with phenotype p, its parent NONE for a root
+	// only called by the thread stepping deme
+	public static int add(int parent, int deme, Phenotype p, double birth) {
+		if (stride == 0) {
+			start();
+		}
+		int node = free[deme];
+		if (node != NONE) {
+			free[deme] = getParent(node);
+		} else {
+			node = next[deme];
+			if ((node & CHUNK_MASK) == 0) {
+				node = newChunk(deme) << CHUNK_SHIFT;
+			}
+			next[deme] = node + 1;
+		}
+		Chunk chunk = chunks[node >>> CHUNK_SHIFT];
+		int i = node & CHUNK_MASK;
+		chunk.parent[i] = parent;
+		link(chunk, i, node);
+		chunk.birth[i] = birth;
+		chunk.phenotype[i] = p;
+		chunk.fitness[i] = 0.0;
+		chunk.fitnessSnapshot[i] = 0;
+		chunk.flags[i] = 0;
+		return node;
+	}
+
+	public static int getParent(int node) {
+		return chunks[node >>> CHUNK_SHIFT].parent[node & CHUNK_MASK];
+	}
+	// only for reshaping the sampled tree, as the depths and jumps of node's descendants are left as they were
+	public static void setParent(int node, int parent) {
+		Chunk chunk = chunks[node >>> CHUNK_SHIFT];
+		chunk.parent[node & CHUNK_MASK] = parent;
+		link(chunk, node & CHUNK_MASK, node);
+	}
+	public static double getBirth(int node) {
+		return chunks[node >>> CHUNK_SHIFT].birth[node & CHUNK_MASK];
+	}
+	public static int getDeme(int node) {
+		return (node >>> CHUNK_SHIFT) % stride;
+	}
+	public static Phenotype getPhenotype(int node) {
+		return chunks[node >>> CHUNK_SHIFT].phenotype[node & CHUNK_MASK];
+	}
+	public static void setPhenotype(int node, Phenotype p) {
+		chunks[node >>> CHUNK_SHIFT].phenotype[node & CHUNK_MASK] = p;
+	}
+	public static double getFitness(int node) {
+		return chunks[node >>> CHUNK_SHIFT].fitness[node & CHUNK_MASK];
+	}
+	public static void setFitness(int node, double f) {
+		chunks[node >>> CHUNK_SHIFT].fitness[node & CHUNK_MASK] = f;
+	}
+	public static int getFitnessSnapshot(int node) {
+		return chunks[node >>> CHUNK_SHIFT].fitnessSnapshot[node & CHUNK_MASK];
+	}
+	public static void setFitnessSnapshot(int node, int s) {
+		chunks[node >>> CHUNK_SHIFT].fitnessSnapshot[node & CHUNK_MASK] = s;
+	}
+
+	// number of ancestors of node
+	public static int getDepth(int node) {
+		return chunks[node >>> CHUNK_SHIFT].depth[node & CHUNK_MASK];
+	}
+
+	// lowest common ancestor of a and b, either of them if it is an ancestor of the other, NONE if they share no root
+	public static int commonAncestor(int a, int b) {
+		int depthA = getDepth(a);
+		int depthB = getDepth(b);
+		if (depthA > depthB) {
+			a = getAncestor(a, depthB);
+		} else if (depthB > depthA) {
+			b = getAncestor(b, depthA);
+		}
+		// a and b are now at the same depth, so their jumps are too, and jump together while that keeps them apart
+		while (a != b) {
+			if (getParent(a) == NONE) {
+				return NONE;
+			}
+			int jumpA = getJump(a);
+			int jumpB = getJump(b);
+			if (jumpA != jumpB) {
+				a = jumpA;
+				b = jumpB;
+			} else {
+				a = getParent(a);
+				b = getParent(b);
+			}
+		}
+		return a;
+	}
+
+	// ancestor of node at the given depth, node itself if already there
+	public static int getAncestor(int node, int depth) {
+		while (getDepth(node) > depth) {
+			int jump = getJump(node);
+			if (getDepth(jump) >= depth) {
+				node = jump;
+			} else {
+				node = getParent(node);
+			}
+		}
+		return node;
+	}
+
+	public static boolean isMarked(int node) {
+		return hasFlag(node, MARKED);
+	}
+	public static void mark(int node) {
+		setFlag(node, MARKED);
+	}
+	public static boolean isTrunk(int node) {
+		return hasFlag(node, TRUNK);
+	}
+	public static void makeTrunk(int node) {
+		setFlag(node, TRUNK);
+	}
+
+	// the following sweep the genealogy, called between steps while no deme is stepping
+	// every node that may still be read must first be passed to keep, every other node is then freed by sweep
+
+	// whether node has been swept, only meaningful until its deme next adds a node
+	public static boolean isFree(int node) {
+		return hasFlag(node, FREE);
+	}
+
+	// keep node and its ancestry through the next sweep
+	public static void keep(int node) {
+		setFlag(node, PINNED);
+		int parent = getParent(node);
+		if (parent != NONE) {
+			setFlag(parent, PINNED);
+		}
+		while (!hasFlag(node, KEPT)) {
+			setFlag(node, KEPT);
+			if (parent == NONE) {
+				break;
+			}
+			setFlag(parent, hasFlag(parent, CHILD) ? CHILDREN : CHILD);
+			node = parent;
+			parent = getParent(node);
+		}
+	}
+
+	// free every node not kept since the last sweep, for reuse by its deme
+	// when collapse is set, also free kept nodes that only continue a single lineage, joining their child to their parent
+	// the nodes kept are the kept nodes themselves, their parents, branch points and the children of branch points,
+	// which leaves the common ancestor of any two kept nodes, its birth, and the births of the nodes just below it
+	public static void sweep(boolean collapse) {
+		Chunk[] table = chunks;
+		if (collapse) {
+			for (int c = 0; c < table.length; c++) {
+				if (table[c] == null) {
+					continue;
+				}
+				byte[] flags = table[c].flags;
+				int[] parent = table[c].parent;
+				for (int i = 0; i <= CHUNK_MASK; i++) {
+					if ((flags[i] & (FREE | KEPT | PINNED | CHILDREN)) == KEPT && parent[i] != NONE && !hasFlag(parent[i], CHILDREN)) {
+						flags[i] |= COLLAPSED;
+					}
+				}
+			}
+			// join the nodes left to their nearest ancestor left, before any parent is overwritten by freeing
+			for (int c = 0; c < table.length; c++) {
+				if (table[c] == null) {
+					continue;
+				}
+				byte[] flags = table[c].flags;
+				int[] parent = table[c].parent;
+				for (int i = 0; i <= CHUNK_MASK; i++) {
+					if ((flags[i] & (KEPT | COLLAPSED)) == KEPT) {
+						int p = parent[i];
+						while (p != NONE && hasFlag(p, COLLAPSED)) {
+							p = getParent(p);
+						}
+						parent[i] = p;
+					}
+				}
+			}
+		}
+		for (int c = 0; c < table.length; c++) {
+			Chunk chunk = table[c];
+			if (chunk == null) {
+				continue;
+			}
+			int deme = c % stride;
+			for (int i = 0; i <= CHUNK_MASK; i++) {
+				byte flag = chunk.flags[i];
+				if ((flag & FREE) != 0) {
+					continue;
+				}
+				if ((flag & (KEPT | COLLAPSED)) == KEPT) {
+					chunk.flags[i] = (byte) (flag & ~SWEEP | (collapse ? KEPT : 0));
+				} else {
+					chunk.phenotype[i] = null;
+					chunk.flags[i] = FREE;
+					chunk.parent[i] = free[deme];
+					free[deme] = (c << CHUNK_SHIFT) | i;
+				}
+			}
+		}
+		// depths and jumps of the nodes left, parents first, clearing KEPT from each as it is done
+		if (collapse) {
+			for (int c = 0; c < table.length; c++) {
+				if (table[c] == null) {
+					continue;
+				}
+				for (int i = 0; i <= CHUNK_MASK; i++) {
+					if ((table[c].flags[i] & KEPT) != 0) {
+						relink((c << CHUNK_SHIFT) | i);
+					}
+				}
+			}
+		}
+	}
+
+	// the following are only for building the sampled tree, once the simulation has ended
+
+	// children of node in the sampled tree, empty and unmodifiable if it has none
+	public static List<Virus> getChildren(int node) {
+		TreeNode t = tree.get(node);
+		if (t == null) {
+			return Collections.emptyList();
+		}
+		return t.children;
+	}
+
+	// add child to node's children if not already there
+	public static void addChild(int node, Virus child) {
+		List<Virus> children = treeNode(node).children;
+		if (!children.contains(child)) {
+			children.add(child);
+		}
+	}
+
+	public static double getLayout(int node) {
+		TreeNode t = tree.get(node);
+		return (t == null) ? 0.0 : t.layout;
+	}
+	public static void setLayout(int node, double y) {
+		treeNode(node).layout = y;
+	}
+	public static int getCoverage(int node) {
+		TreeNode t = tree.get(node);
+		return (t == null) ? 0 : t.coverage;
+	}
+	public static void incrementCoverage(int node) {
+		treeNode(node).coverage++;
+	}
+
+	private static int getJump(int node) {
+		return chunks[node >>> CHUNK_SHIFT].jump[node & CHUNK_MASK];
+	}
+
+	// set depth and jump of node, slot i of chunk, from its parent, which must already be set
+	// the jump skips as far as the parent's jump does again, when the parent's jump and its jump's jump span equal depths,
+	// otherwise it is the parent, so jumps span 1, 1, 3, 1, 1, 3, 7 ... levels and any ancestor is O(log depth) jumps away
+	private static void link(Chunk chunk, int i, int node) {
+		int parent = chunk.parent[i];
+		if (parent == NONE) {
+			chunk.depth[i] = 0;
+			chunk.jump[i] = node;
+			return;
+		}
+		int jump = getJump(parent);
+		int depth = getDepth(parent);
+		chunk.depth[i] = depth + 1;
+		if (depth - getDepth(jump) == getDepth(jump) - getDepth(getJump(jump))) {
+			chunk.jump[i] = getJump(jump);
+		} else {
+			chunk.jump[i] = parent;
+		}
+	}
+
+	// link node and those of its ancestors still marked KEPT, from the highest down
+	private static void relink(int node) {
+		int count = 0;
+		while (node != NONE && hasFlag(node, KEPT)) {
+			if (count == stack.length) {
+				stack = Arrays.copyOf(stack, 2 * count);
+			}
+			stack[count] = node;
+			count++;
+			node = getParent(node);
+		}
+		while (count > 0) {
+			count--;
+			node = stack[count];
+			Chunk chunk = chunks[node >>> CHUNK_SHIFT];
+			link(chunk, node & CHUNK_MASK, node);
+			chunk.flags[node & CHUNK_MASK] &= ~KEPT;
+		}
+	}
+
+	private static boolean hasFlag(int node, byte flag) {
+		return (chunks[node >>> CHUNK_SHIFT].flags[node & CHUNK_MASK] & flag) != 0;
+	}
+
+	private static void setFlag(int node, byte flag) {
+		chunks[node >>> CHUNK_SHIFT].flags[node & CHUNK_MASK] |= flag;
+	}
+
+	private static TreeNode treeNode(int node) {
+		TreeNode t = tree.get(node);
+		if (t == null) {
+			t = new TreeNode();
+			tree.put(node, t);
+		}
+		return t;
+	}
+
+	private static synchronized void start() {
+		if (stride == 0) {
+			stride = Parameters.demeCount;
+			chunkCount = new int[stride];
+			next = new int[stride];
+			free = new int[stride];
+			Arrays.fill(free, NONE);
+		}
+	}
+
+	// number of a new chunk for deme, growing the table of chunks when needed
+	// the chunk is published by writing chunks again, so a thread that sees its nodes also sees the chunk
+	private static synchronized int newChunk(int deme) {
+		int c = chunkCount[deme] * stride + deme;
+		chunkCount[deme]++;
+		Chunk[] table = chunks;
+		if (c >= table.length) {
+			table = Arrays.copyOf(table, Math.max(c + 1, 2 * table.length));
+		}
+		table[c] = new Chunk();
+		Arrays.fill(table[c].flags, FREE);
+		chunks = table;
+		return c;
+	}
+
+	// columns of CHUNK_MASK + 1 consecutive nodes
+	private static class Chunk {
+
+		private int[] parent = new int[CHUNK_MASK + 1];
+		private int[] depth = new int[CHUNK_MASK + 1];
+		private int[] jump = new int[CHUNK_MASK + 1];				// an ancestor, see link
+		private double[] birth = new double[CHUNK_MASK + 1];
+		private Phenotype[] phenotype = new Phenotype[CHUNK_MASK + 1];
+		private double[] fitness = new double[CHUNK_MASK + 1];
+		private int[] fitnessSnapshot = new int[CHUNK_MASK + 1];	// immunity snapshot a pending fitness waits on, see LazyFitness
+		private byte[] flags = new byte[CHUNK_MASK + 1];
+
+	}
+
+	// a node of the sampled tree
+	private static class TreeNode {
+
+		private List<Virus> children = new ArrayList<>(0);
+		private double layout;
+		private int coverage;		// how many times this node has been covered in tracing the tree backwards
+
+	}
+
+}
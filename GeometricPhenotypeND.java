@@ -0,0 +1,177 @@
+/* Antigenic phenotype in a Euclidean space of any number of dimensions */
+/* The one implementation of the geometric spaces, which only differ in their dimensions and how they mutate */
+/* Coordinates are not held by the object but packed in PhenotypeTable, added when the phenotype is made */
+/* and released by a Cleaner once the phenotype is unreachable, so the table only keeps phenotypes still in use */
+/* Immune histories hold ids together with the phenotypes themselves, so an id is never released while a history holds it */
+/* Multiple Viruses can reference a single Phenotype object */
+
+import java.lang.ref.Cleaner;
+
+public class GeometricPhenotypeND implements Phenotype {
+
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	// fields
+	private final int id;		// PhenotypeTable id, fixed for the life of the phenotype
+
+	// constructor
+	public GeometricPhenotypeND(double[] traits) {
+		id = PhenotypeTable.add(traits);
+		CLEANER.register(this, new Release(id));
+	}
+
+	public int dimensions() {
+		return PhenotypeTable.getDimensions(id);
+	}
+	public double getTrait(int i) {
+		return PhenotypeTable.getTrait(id, i);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	// only for transforming output, see PhenotypeTable.setTrait
+	public void setTrait(double t, int i) {
+		PhenotypeTable.setTrait(id, i, t);
+	}
+
+	// raw antigenic distance between two phenotypes
+	public double distance(Phenotype p) {
+		return PhenotypeTable.distance(id, ((GeometricPhenotypeND) p).id);
+	}
+
+	// cross immunity between a virus phenotype and a host's immune history
+	// here encoded more directly as risk of infection, which ranges from 0 to 1
+	public double riskOfInfection( Phenotype[] history) {
+		int[] ids = new int[history.length];
+		for (int i = 0; i < history.length; i++) {
+			ids[i] = PhenotypeTable.idOf(history[i]);
+		}
+		return PhenotypeTable.riskOfInfection(this, ids);
+	}
+
+	// returns a mutated copy, original Phenotype is unharmed
+	// the spaces "geometric", "geometric3d" and "geometric10d" keep the kernels of the classes they once had,
+	// so that they draw the same random numbers and make the same coordinates as before
+	public Phenotype mutate() {
+		if (PhenotypeFactory.GEOMETRIC.equals(Parameters.phenotypeSpace)) {
+			return mutatePlanar();
+		}
+		if (PhenotypeFactory.GEOMETRIC3D.equals(Parameters.phenotypeSpace)) {
+			return mutateSpherical();
+		}
+		return mutateHyperspherical(PhenotypeFactory.GEOMETRIC10D.equals(Parameters.phenotypeSpace));
+	}
+
+	// mutate with gamma, in a random direction of the plane of the first two coordinates or along the first
+	private Phenotype mutatePlanar() {
+
+		// direction of mutation
+		double theta = 0;
+		if (Parameters.mut2D) {
+			theta = Random.nextDouble(0,2*Math.PI);
+		} else {
+			if (Random.nextBoolean(0.5)) { theta = 0; }
+			else { theta = Math.PI; }
+		}
+
+		// size of mutation
+		double r = Parameters.meanStep;
+		if (!Parameters.fixedStep) {
+			double alpha = (Parameters.meanStep *  Parameters.meanStep) / (Parameters.sdStep * Parameters.sdStep);
+			double beta = (Parameters.sdStep * Parameters.sdStep) / Parameters.meanStep;
+			r = Random.nextGamma(alpha, beta);
+		}
+
+		double[] traits = getTraits();
+		traits[0] = traits[0] + r * Math.cos(theta);
+		traits[1] = traits[1] + r * Math.sin(theta);
+		return new GeometricPhenotypeND(traits);
+
+	}
+
+	// moves an exponentially distributed distance in a uniformly random direction of the first three coordinates
+	// random spherical point code comes from http://mathworld.wolfram.com/SpherePointPicking.html
+	private Phenotype mutateSpherical() {
+
+		// spherical direction
+		double u = Random.nextDouble(-1,1);
+		double theta = Random.nextDouble(0,2*Math.PI);
+
+		// size of mutation
+		double r = Random.nextExponential(Parameters.meanStep);
+
+		double[] traits = getTraits();
+		traits[0] = traits[0] + r * Math.sqrt(1-u*u) * Math.cos(theta);
+		traits[1] = traits[1] + r * Math.sqrt(1-u*u) * Math.sin(theta);
+		traits[2] = traits[2] + r * u;
+		return new GeometricPhenotypeND(traits);
+
+	}
+
+	// moves an exponentially distributed distance in a uniformly random direction
+	// random spherical point code comes from http://mathworld.wolfram.com/HyperspherePointPicking.html
+	// normalisedFirst scales the direction to unit length before the distance, which rounds differently
+	private Phenotype mutateHyperspherical(boolean normalisedFirst) {
+
+		int dimen = dimensions();
+
+		// spherical direction, from normalised gaussian coordinates
+		double[] vec = new double[dimen];
+		double norm = 0.0;
+		for (int i = 0; i < dimen; i++) {
+			vec[i] = Random.nextNormal();
+			norm += vec[i]*vec[i];
+		}
+		norm = Math.sqrt(norm);
+
+		// size of mutation
+		double r = Random.nextExponential(Parameters.meanStep);
+
+		// scaling and applying to original phenotype
+		for (int i = 0; i < dimen; i++) {
+			if (normalisedFirst) {
+				vec[i] = getTrait(i) + vec[i] / norm * r;
+			} else {
+				vec[i] = getTrait(i) + vec[i] * r / norm;
+			}
+		}
+
+		return new GeometricPhenotypeND(vec);
+
+	}
+
+	// a new array of the coordinates
+	private double[] getTraits() {
+		double[] traits = new double[dimensions()];
+		for (int i = 0; i < traits.length; i++) {
+			traits[i] = getTrait(i);
+		}
+		return traits;
+	}
+
+	public String toString() {
+		StringBuilder fullString = new StringBuilder(String.format("%.4f", getTrait(0)));
+		for (int i = 1; i < dimensions(); i++) {
+			fullString.append(String.format(",%.4f", getTrait(i)));
+		}
+		return fullString.toString();
+	}
+
+	// returns the id to the table, holding no reference to the phenotype so as not to keep it reachable
+	private static class Release implements Runnable {
+
+		private final int id;
+
+		Release(int id) {
+			this.id = id;
+		}
+
+		public void run() {
+			PhenotypeTable.release(id);
+		}
+
+	}
+
+}
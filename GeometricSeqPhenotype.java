@@ -8,6 +8,7 @@ import java.util.Arrays;
  * Antigenic phenotype is defined as a position in 2D space, where the antigenic
  * distance
  * between two viruses can be computed as the Euclidean distance between them.
+ * The position is held in PhenotypeTable, as for every GeometricPhenotype.
  * Multiple Viruses can reference a single GeometricSeqPhenotype which is
  * identified by its data contents.
  *
@@ -19,18 +20,6 @@ public class GeometricSeqPhenotype extends GeometricPhenotype {
      */
     private char[] nucleotideSequence;
 
-    /**
-     * The first parameter that determines the position of this GeometricPhenotype
-     * in Euclidean space
-     */
-    private double traitA;
-
-    /**
-     * The second parameter that determines the position of this GeometricPhenotype
-     * in Euclidean space
-     */
-    private double traitB;
-
     /**
      * The number of epitope mutations this GeometricPhenotype went through
      * (counting from the startingSequence)
@@ -92,14 +81,7 @@ public class GeometricSeqPhenotype extends GeometricPhenotype {
      *          and an empty GeometricPhenotype
      */
     public GeometricSeqPhenotype() {
-        this.traitA = 0.0;
-        this.traitB = 0.0;
-        this.nucleotideSequence = Parameters.startingSequence.toCharArray();
-        this.epitopeMutationCount = 0;
-        this.nonepitopeMutationCount = 0;
-        this.lowEpitopeMutationCount = 0;
-        this.highEpitopeMutationCount = 0;
-        checkRep();
+        this(0.0, 0.0);
     }
 
     /**
@@ -113,10 +95,7 @@ public class GeometricSeqPhenotype extends GeometricPhenotype {
      *          parameters.
      */
     public GeometricSeqPhenotype(double tA, double tB) {
-        this();
-        this.traitA = tA;
-        this.traitB = tB;
-        checkRep();
+        this(tA, tB, Parameters.startingSequence.toCharArray());
     }
 
     /**
@@ -133,11 +112,7 @@ public class GeometricSeqPhenotype extends GeometricPhenotype {
      *          parameters.
      */
     public GeometricSeqPhenotype(double tA, double tB, char[] startingSequence) {
-        this();
-        this.traitA = tA;
-        this.traitB = tB;
-        this.nucleotideSequence = startingSequence;
-        checkRep();
+        this(tA, tB, startingSequence, 0, 0, 0, 0);
     }
 
     /**
@@ -162,8 +137,7 @@ public class GeometricSeqPhenotype extends GeometricPhenotype {
      *          parameters.
      */
     public GeometricSeqPhenotype(double tA, double tB, char[] startingSequence, int e, int nE, int nLE, int nHE) {
-        this.traitA = tA;
-        this.traitB = tB;
+        super(tA, tB);
         this.nucleotideSequence = startingSequence;
         this.epitopeMutationCount = e;
         this.nonepitopeMutationCount = nE;
@@ -172,24 +146,6 @@ public class GeometricSeqPhenotype extends GeometricPhenotype {
         checkRep();
     }
 
-    /**
-     * Return x-coordinate of where this GeometricSeqPhenotype is in Euclidean space
-     *
-     * @return position of this GeometricSeqPhenotype along the x-axis
-     */
-    public double getTraitA() {
-        return traitA;
-    }
-
-    /**
-     * Return y-coordinate of where this GeometricSeqPhenotype is in Euclidean space
-     *
-     * @return position of this GeometricSeqPhenotype along the y-axis
-     */
-    public double getTraitB() {
-        return traitB;
-    }
-
     /**
      * Returns the nucleotide sequence of this GeometricSeqPhenotype.
      * Valid example outputs include "ACG" and "ACGTGTACGTGT"
@@ -201,22 +157,6 @@ public class GeometricSeqPhenotype extends GeometricPhenotype {
         return String.valueOf(this.nucleotideSequence);
     }
 
-    /**
-     * Return the (Euclidean) distance between this GeometricSeqPhenotype and p in
-     * Euclidean space
-     *
-     * @param p GeometricSeqPhenotype to calculate the distance between
-     * @return distance between this GeometricSeqPhenotype and p
-     */
-    public double distance(Phenotype p) {
-        GeometricSeqPhenotype p2d = (GeometricSeqPhenotype) p;
-        double distA = (getTraitA() - p2d.getTraitA());
-        double distB = (getTraitB() - p2d.getTraitB());
-        double dist = (distA * distA) + (distB * distB);
-        dist = Math.sqrt(dist);
-        return dist;
-    }
-
     /**
      * Returns a mutated copy of this GeometricSeqPhenotype (point substitution),
      * original GeometricSeqPhenotype is unharmed
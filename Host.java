@@ -1,4 +1,5 @@
 /* A human individual that harbors viruses and immunity */
+/* Immune histories are interned, hosts of a deme with the same history share one ImmuneHistory */
 
 import java.io.*;
 import java.util.regex.*;
@@ -7,21 +8,30 @@ public class Host {
 
 	// fields
 	private Virus infection;
-	private Phenotype[] immuneHistory = new Phenotype[0];
+	private ImmuneHistory immuneHistory;
 
-	// naive host
-	public Host() {
+	// naive host, with histories interned under root
+	public Host(ImmuneHistory root) {
+		immuneHistory = root.retain();
 		initializeHistory();
 	}
 
 	// initial infected host
-	public Host(Virus v) {
+	public Host(Virus v, ImmuneHistory root) {
 		infection = v;
+		immuneHistory = root.retain();
 		initializeHistory();
 	}
 
-	// checkpointed host
+	// snapshot of a host held by a HostStore, with a history of its own
+	public Host(Virus v, Phenotype[] history) {
+		infection = v;
+		immuneHistory = new ImmuneHistory().intern(history);
+	}
+
+	// checkpointed host, with a history of its own until internHistory is called
 	public Host(int d, String sVirus, String sHist) {
+		immuneHistory = new ImmuneHistory().retain();
 		if (!sVirus.equals("n")) {
 			Pattern rc = Pattern.compile(",");
     		String[] traitList = rc.split(sVirus);
@@ -54,16 +64,25 @@ public class Host {
 	}
 
 	public void addToHistory(Phenotype p) {
-		Phenotype[] newHistory = new Phenotype[immuneHistory.length + 1];
-		System.arraycopy(immuneHistory, 0, newHistory, 0, immuneHistory.length);
-		newHistory[immuneHistory.length] = p;
-		immuneHistory = newHistory;
+		immuneHistory = immuneHistory.add(p);
+	}
+
+	// move this host's history under root, sharing it with the hosts already there
+	public void internHistory(ImmuneHistory root) {
+		ImmuneHistory interned = root.intern(immuneHistory.getPhenotypes());
+		immuneHistory.release();
+		immuneHistory = interned;
+	}
+
+	// drop this host's share of its history, called when the host leaves the population
+	public void releaseHistory() {
+		immuneHistory.release();
 	}
 
 	// infection methods
 	public void reset() {
 		infection = null;
-		immuneHistory = new Phenotype[0];
+		immuneHistory = immuneHistory.clear();
 	}
 
 	public boolean isInfected() {
@@ -81,7 +100,7 @@ public class Host {
 		infection = null;
 	}
 	public int getHistoryLength() {
-		return immuneHistory.length;
+		return immuneHistory.length();
 	}
 
 	// make a new virus with the mutated phenotype
@@ -92,32 +111,36 @@ public class Host {
 
 	// remove random phenotype from host's immune profile, do nothing if empty
 	public void waneImmunity() {
-		int length = immuneHistory.length;
+		int length = immuneHistory.length();
 		if (length > 0) {
 			int remove = Random.nextInt(0, length-1);
-			Phenotype[] newHistory = new Phenotype[length - 1];
-			int currentIndex = 0;
-			for (int i = 0; i < length; i++) {
-				if (i != remove) {
-					newHistory[currentIndex] = immuneHistory[i];
-					currentIndex++;
-				}
-			}
-			immuneHistory = newHistory;
+			immuneHistory = immuneHistory.remove(remove);
 		}
 	}
 
 	// history methods
+	// a new array built from the interned history, so it may be modified freely
 	public Phenotype[] getHistory() {
+		return immuneHistory.getPhenotypes();
+	}
+
+	public ImmuneHistory getImmuneHistory() {
 		return immuneHistory;
 	}
 
 	public void printHistoryCoordinates(PrintStream stream) {
-		for (Phenotype phenotype : immuneHistory) {
+		for (Phenotype phenotype : getHistory()) {
 			// get traitA and traitB from phenotype
-			String[] p = phenotype.toString().split(",");
-			String traitA = p[1];
-			String traitB = p[2];
+			String traitA;
+			String traitB;
+			if (phenotype instanceof GeometricSeqPhenotype) {
+				String[] p = phenotype.toString().split(",");
+				traitA = p[1];
+				traitB = p[2];
+			} else {
+				traitA = String.format("%.4f", phenotype.getTrait(0));
+				traitB = String.format("%.4f", phenotype.getTrait(1));
+			}
 			stream.print("(" + traitA + "," + traitB + ")");
 		}
 		stream.println();
@@ -133,10 +156,11 @@ public class Host {
 	}
 
 	public void printHistory(PrintStream stream) {
-		if (immuneHistory.length > 0) {
-			stream.print(immuneHistory[0]);
-			for (int i = 1; i < immuneHistory.length; i++) {
-				stream.print(";" + immuneHistory[i]);
+		Phenotype[] history = getHistory();
+		if (history.length > 0) {
+			stream.print(history[0]);
+			for (int i = 1; i < history.length; i++) {
+				stream.print(";" + history[i]);
 			}
 		}
 		else {
@@ -10,18 +10,31 @@ public class HostPopulation {
 	private int deme;
 	private String name;	
 	private int cases;	
-	private List<Host> susceptibles = new ArrayList<>();
-	private List<Host> infecteds = new ArrayList<>();
-	private List<Host> recovereds = new ArrayList<>();		// this is the transcendental class, immune to all forms of virus
+	private HostStore hosts = makeHostStore();		// recovered compartment is the transcendental class, immune to all forms of virus
+	private RecoveryCalendar recoveries = makeRecoveryCalendar();	// recovery days of infecteds, null unless recoveries are scheduled
+	private RiskLandscape landscape = makeRiskLandscape();		// interpolated average risks, null unless riskLandscape is set
 	private double diversity;
 	private double tmrca;
 	private double netau;	
 	private double serialInterval;
 	private double antigenicDiversity;
+	private LineageStatistics statistics = new LineageStatistics();	// pairs behind the values above, also pooled by Simulation
 	
 	private int newContacts;
 	private int newRecoveries;
 	private double contactRate;
+	private int[] infectedSnapshot;			// Genealogy nodes of the frozen infections read by other demes during parallel stepping
+	private RandomStream random;			// this deme's own random stream, also bound for Host and Phenotype draws
+	private List<Virus> sampled = new ArrayList<>();	// sampled this step, handed to VirusTree in deme order
+	private AliasTable importSources = new AliasTable();	// incoming network edges weighted by source prevalence, for aggregated imports
+	private double[] importWeights = new double[0];
+	private int[] batchNode = new int[0];				// contacts of the current batch, Genealogy node of the infecting virus and susceptible contacted
+	private int[] batchTarget = new int[0];
+	private int[] batchPhenotype = new int[0];			// gathered for the risk kernel, PhenotypeTable id of each virus
+	private int[][] batchHistory = new int[0][];		// and ids of each susceptible's immune history, with its bounds
+	private double[][] batchBounds = new double[0][];
+	private double[] batchRisk = new double[0];
+	private long[] batchInfections = new long[0];
 		
 	// construct population, using Virus v as initial infection
 	public HostPopulation(int d) {
@@ -29,6 +42,8 @@ public class HostPopulation {
 		// basic parameters
 		deme = d;
 		name = Parameters.demeNames[deme];
+		random = Random.split();
+		RandomStream previous = Random.use(random);
 		int initialR = 0;
 		if (Parameters.transcendental) {
 			initialR = (int) ((double) Parameters.initialNs[deme] * Parameters.initialPrT);
@@ -40,14 +55,12 @@ public class HostPopulation {
 			initialS -= Parameters.initialI;
 		}
 		for (int i = 0; i < initialS; i++) {
-			Host h = new Host();			
-			susceptibles.add(h);
+			hosts.addNaive(HostStore.SUSCEPTIBLE);
 		}
 		
 		// fill population with recovereds
 		for (int i = 0; i < initialR; i++) {
-			Host h = new Host();			
-			recovereds.add(h);
+			hosts.addNaive(HostStore.RECOVERED);
 		}		
 		
 		if (deme == Parameters.initialDeme - 1) {
@@ -55,12 +68,14 @@ public class HostPopulation {
 			// infect some individuals
 			for (int i = 0; i < Parameters.initialI; i++) {
 				Virus v = new Virus(Parameters.urVirus, deme);
-				Host h = new Host(v);
-				infecteds.add(h);
+				hosts.addInfected(v);
+				scheduleRecovery();
 			}	
 		
 		}
 		
+		Random.use(previous);
+		
 	}
 	
 	// construct checkpointed host population and infecting viruses
@@ -70,6 +85,7 @@ public class HostPopulation {
 		
 			deme = d;
 			name = Parameters.demeNames[deme];
+			random = Random.split();
 		
 			try {
     			BufferedReader in = new BufferedReader(new FileReader("out.hosts"));
@@ -83,10 +99,11 @@ public class HostPopulation {
         			if (thisDeme == deme) {
         				Host h = new Host(deme, sVirus, sHist);
         				if (sVirus.equals("n")) {
-        					susceptibles.add(h);	
+        					hosts.add(HostStore.SUSCEPTIBLE, h);	
         				}
         				else {
-        					infecteds.add(h);
+        					hosts.add(HostStore.INFECTED, h);
+        					scheduleRecovery();
         				}
         			}
     			}
@@ -101,18 +118,49 @@ public class HostPopulation {
 	
 	}
 	
+	private static HostStore makeHostStore() {
+		if (Parameters.hostStore.equals("arrays")) {
+			return new ArrayHostStore();
+		}
+		if (Parameters.hostStore.equals("classes")) {
+			return new ClassHostStore();
+		}
+		return new ObjectHostStore();
+	}
+	
+	// the exact engine fires recoveries at rate nu, so only the timestep engines schedule them
+	private static RecoveryCalendar makeRecoveryCalendar() {
+		if (Parameters.scheduledRecovery && !Parameters.engine.equals("exact")) {
+			return new RecoveryCalendar(Parameters.deltaT, 1.0 / Parameters.nu);
+		}
+		return null;
+	}
+	
+	private RiskLandscape makeRiskLandscape() {
+		if (Parameters.riskLandscape) {
+			return new RiskLandscape(p -> getAverageRisk(p, false));
+		}
+		return null;
+	}
+	
 	// accessors
+	public int getDeme() {
+		return deme;
+	}
+	public RandomStream getRandomStream() {
+		return random;
+	}
 	public int getN() {
-		return susceptibles.size() + infecteds.size() + recovereds.size();
+		return getS() + getI() + getR();
 	}
 	public int getS() {
-		return susceptibles.size();
+		return hosts.size(HostStore.SUSCEPTIBLE);
 	}
 	public int getI() {
-		return infecteds.size();
+		return hosts.size(HostStore.INFECTED);
 	}
 	public int getR() {
-		return recovereds.size();
+		return hosts.size(HostStore.RECOVERED);
 	}	
 	public double getPrS() {
 		return (double) getS() / (double) getN();
@@ -124,64 +172,122 @@ public class HostPopulation {
 		return (double) getR() / (double) getN();
 	}	
 	public int getRandomN() {
-		return Random.nextInt(0,getN()-1);
+		return random.nextInt(0,getN()-1);
 	}
 	public int getRandomS() {
-		return Random.nextInt(0,getS()-1);
+		return random.nextInt(0,getS()-1);
 	}
 	public int getRandomI() {
-		return Random.nextInt(0,getI()-1);
+		return random.nextInt(0,getI()-1);
 	}
 	public int getRandomR() {
-		return Random.nextInt(0,getR()-1);
+		return random.nextInt(0,getR()-1);
 	}
 	
-	public Host getRandomHost() {
-		// figure out whether to pull from S, I or R
-		Host h = null;
-		double n = Random.nextDouble(0.0,1.0);
+	// figure out whether to pull from S, I or R, in proportion to their sizes
+	private int getRandomCompartment() {
+		double n = random.nextDouble(0.0,1.0);
 		if (n < getPrS()) {
-			h = getRandomHostS();
+			return HostStore.SUSCEPTIBLE;
 		}
-		else if (n > getPrS() && n < getPrS() + getPrI()) {
-			h = getRandomHostI();
+		else if (n < getPrS() + getPrI()) {
+			return HostStore.INFECTED;
 		}
-		else if (n > getPrS() + getPrI()) {
-			h = getRandomHostR();
-		}
-		return h;
+		return HostStore.RECOVERED;
+	}
+	
+	// hosts returned by these may be snapshots, depending on the host store
+	public Host getRandomHost() {
+		int c = getRandomCompartment();
+		int index = random.nextInt(0,hosts.size(c)-1);
+		return hosts.getHost(c, index);
 	}
 	
 	public Host getRandomHostS() {
-		int index = Random.nextInt(0,getS()-1);
-		return susceptibles.get(index);
+		int index = random.nextInt(0,getS()-1);
+		return hosts.getHost(HostStore.SUSCEPTIBLE, index);
 	}
 	public Host getRandomHostI() {
 		Host h = null;
 		if (getI() > 0) {
-			int index = Random.nextInt(0,getI()-1);
-			h = infecteds.get(index);
+			int index = random.nextInt(0,getI()-1);
+			h = hosts.getHost(HostStore.INFECTED, index);
 		}
 		return h;
 	}
 	public Host getRandomHostR() {
 		Host h = null;
 		if (getR() > 0) {	
-			int index = Random.nextInt(0,getR()-1);
-			h = recovereds.get(index);
+			int index = random.nextInt(0,getR()-1);
+			h = hosts.getHost(HostStore.RECOVERED, index);
 		}
 		return h;
 	}	
 	
+	public ImmuneHistory getHistoryRoot() {
+		return hosts.getHistoryRoot();
+	}
+	public ImmuneHistory getRandomImmuneHistory() {
+		int c = getRandomCompartment();
+		int index = random.nextInt(0,hosts.size(c)-1);
+		return hosts.getImmuneHistory(c, index);
+	}
+	
 	public Virus getRandomInfection() {
 		Virus v = null;
-		Host h = getRandomHostI();
-		if (h != null) {
-			v = h.getInfection();
+		if (getI() > 0) {
+			int index = random.nextInt(0,getI()-1);
+			v = hosts.getInfection(index);
 		}
 		return v;
 	}	
 	
+	// freeze current infections so that other demes see a consistent state while this deme keeps changing
+	public void snapshotInfecteds() {
+		infectedSnapshot = new int[getI()];
+		for (int i = 0; i < infectedSnapshot.length; i++) {
+			infectedSnapshot[i] = hosts.getInfectionNode(i);
+		}
+	}
+	public void clearSnapshot() {
+		infectedSnapshot = null;
+	}
+	
+	// keep the current infections, and any snapshot of them, through a sweep of the genealogy
+	public void keepInfections() {
+		for (int i = 0; i < getI(); i++) {
+			Genealogy.keep(hosts.getInfectionNode(i));
+		}
+		if (infectedSnapshot != null) {
+			for (int node : infectedSnapshot) {
+				Genealogy.keep(node);
+			}
+		}
+	}
+	
+	// infecteds as seen by other demes, the snapshot if one has been taken
+	public int getContactI() {
+		if (infectedSnapshot != null) {
+			return infectedSnapshot.length;
+		}
+		return getI();
+	}
+	// the snapshot is read by other demes' threads, so it is drawn from with the stream bound to the caller
+	// Genealogy node of a random infection as seen by other demes, Genealogy.NONE if there is none
+	public int getRandomContactNode() {
+		int node = Genealogy.NONE;
+		if (infectedSnapshot != null) {
+			if (infectedSnapshot.length > 0) {
+				int index = Random.nextInt(0,infectedSnapshot.length-1);
+				node = infectedSnapshot[index];
+			}
+		} else if (getI() > 0) {
+			int index = random.nextInt(0,getI()-1);
+			node = hosts.getInfectionNode(index);
+		}
+		return node;
+	}
+	
 	public void resetCases() {
 		cases = 0;
 	}
@@ -210,26 +316,20 @@ public class HostPopulation {
 	}			
 	
 	public void removeSusceptible(int i) {
-		int lastIndex = getS() - 1;
-		Host lastHost = susceptibles.get(lastIndex);
-		susceptibles.set(i,lastHost);
-		susceptibles.remove(lastIndex);
+		hosts.remove(HostStore.SUSCEPTIBLE, i);
 	}	
 	public void removeInfected(int i) {
-		int lastIndex = getI() - 1;
-		Host lastHost = infecteds.get(lastIndex);
-		infecteds.set(i,lastHost);
-		infecteds.remove(lastIndex);
+		hosts.remove(HostStore.INFECTED, i);
+		dropRecovery(i);
 	}
 	public void removeRecovered(int i) {
-		int lastIndex = getR() - 1;
-		Host lastHost = recovereds.get(lastIndex);
-		recovereds.set(i,lastHost);
-		recovereds.remove(lastIndex);
+		hosts.remove(HostStore.RECOVERED, i);
 	}	
 	
 	public void stepForward() {
 	
+		RandomStream previous = Random.use(random);
+	
 	//	resetCases();
 		if (Parameters.swapDemography) {
 			swap();
@@ -250,240 +350,496 @@ public class HostPopulation {
 		mutate();
 		sample();
 
+		Random.use(previous);
 	
 	}
 	
+	// largest timestep over which the expected change in S and I stays within a fraction tauEpsilon of their size
+	// follows the tau selection of Cao, Gillespie and Petzold (2006), bounding both the mean and the variance of the change
+	// mutations, sampling and waning leave S and I untouched and so do not constrain the step
+	public double getLeapSize() {
+	
+		double infection = getI() * getPrS() * Parameters.beta * Parameters.getSeasonality(deme);
+		double recovery = getI() * Parameters.nu;
+		double turnoverI = getI() * Parameters.birthRate;
+		double turnoverS = 0.0;
+		if (!Parameters.swapDemography) {
+			turnoverI = getI() * Parameters.deathRate;
+			turnoverS = getN() * Parameters.birthRate - getS() * Parameters.deathRate;
+		}
+		double returns = 0.0;
+		if (Parameters.transcendental) {
+			returns = getR() * Parameters.immunityLoss;
+		}
+		
+		double driftI = infection - recovery - turnoverI;
+		double varianceI = infection + recovery + turnoverI;
+		double driftS = recovery + returns + turnoverS - infection;
+		if (Parameters.swapDemography) {
+			driftS += turnoverI;
+		}
+		double varianceS = infection + recovery + returns + Math.abs(turnoverS) + turnoverI;
+		
+		double tau = Math.min(leapBound(getI(), driftI, varianceI), leapBound(getS(), driftS, varianceS));
+		return tau;
+		
+	}
+	
+	private double leapBound(int x, double drift, double variance) {
+		double allowed = Math.max(Parameters.tauEpsilon * x, 1.0);
+		double tau = Double.POSITIVE_INFINITY;
+		if (drift != 0.0) {
+			tau = allowed / Math.abs(drift);
+		}
+		if (variance > 0.0) {
+			tau = Math.min(tau, allowed * allowed / variance);
+		}
+		return tau;
+	}
+	
 	// draw a Poisson distributed number of births and add these hosts to the end of the population list
 	public void grow() {
-		double totalBirthRate = getN() * Parameters.birthRate * Parameters.deltaT;
-		int births = Random.nextPoisson(totalBirthRate);
+		double totalBirthRate = getN() * Parameters.birthRate * Parameters.stepSize;
+		int births = random.nextPoisson(totalBirthRate);
 		for (int i = 0; i < births; i++) {
-			Host h = new Host();
-			susceptibles.add(h);
+			birth();
 		}
 	}
 	
 	// draw a Poisson distributed number of deaths and remove random hosts from the population list
 	public void decline() {
 		// deaths in susceptible class
-		double totalDeathRate = getS() * Parameters.deathRate * Parameters.deltaT;
-		int deaths = Random.nextPoisson(totalDeathRate);
+		double totalDeathRate = getS() * Parameters.deathRate * Parameters.stepSize;
+		int deaths = random.nextPoisson(totalDeathRate);
 		for (int i = 0; i < deaths; i++) {
-			if (getS()>0) {
-				int index = getRandomS();
-				removeSusceptible(index);
-			}
+			deathS();
 		}		
 		// deaths in infectious class		
-		totalDeathRate = getI() * Parameters.deathRate * Parameters.deltaT;
-		deaths = Random.nextPoisson(totalDeathRate);
+		totalDeathRate = getI() * Parameters.deathRate * Parameters.stepSize;
+		deaths = random.nextPoisson(totalDeathRate);
 		for (int i = 0; i < deaths; i++) {
-			if (getI()>0) {
-				int index = getRandomI();
-				removeInfected(index);
-			}
+			deathI();
 		}
 		// deaths in recovered class		
-		totalDeathRate = getR() * Parameters.deathRate * Parameters.deltaT;
-		deaths = Random.nextPoisson(totalDeathRate);
+		totalDeathRate = getR() * Parameters.deathRate * Parameters.stepSize;
+		deaths = random.nextPoisson(totalDeathRate);
 		for (int i = 0; i < deaths; i++) {
-			if (getR()>0) {
-				int index = getRandomR();
-				removeRecovered(index);
-			}
+			deathR();
 		}				
 	}
 	
 	// draw a Poisson distributed number of births and reset these individuals
 	public void swap() {
 		// draw random individuals from susceptible class
-		double totalBirthRate = getS() * Parameters.birthRate * Parameters.deltaT;
-		int births = Random.nextPoisson(totalBirthRate);
+		double totalBirthRate = getS() * Parameters.birthRate * Parameters.stepSize;
+		int births = random.nextPoisson(totalBirthRate);
 		for (int i = 0; i < births; i++) {
-			if (getS()>0) {
-				int index = getRandomS();
-				Host h = susceptibles.get(index);
-				h.reset();
-			}
+			swapS();
 		}		
 		// draw random individuals from infected class
-		totalBirthRate = getI() * Parameters.birthRate * Parameters.deltaT;
-		births = Random.nextPoisson(totalBirthRate);
+		totalBirthRate = getI() * Parameters.birthRate * Parameters.stepSize;
+		births = random.nextPoisson(totalBirthRate);
 		for (int i = 0; i < births; i++) {
-			if (getI()>0) {
-				int index = getRandomI();
-				Host h = infecteds.get(index);
-				h.reset();
-				removeInfected(index);
-				susceptibles.add(h);
-			}
+			swapI();
 		}	
 		// draw random individuals from recovered class
-		totalBirthRate = getR() * Parameters.birthRate * Parameters.deltaT;
-		births = Random.nextPoisson(totalBirthRate);
+		totalBirthRate = getR() * Parameters.birthRate * Parameters.stepSize;
+		births = random.nextPoisson(totalBirthRate);
 		for (int i = 0; i < births; i++) {
-			if (getR()>0) {
-				int index = getRandomR();
-				Host h = recovereds.get(index);
-				h.reset();
-				removeRecovered(index);
-				susceptibles.add(h);
-			}
+			swapR();
 		}			
 	}
 	
+	// single demographic events, shared by the timestep loops and the exact engine
+	public void birth() {
+		hosts.addNaive(HostStore.SUSCEPTIBLE);
+	}
+	public void deathS() {
+		if (getS()>0) {
+			int index = getRandomS();
+			removeSusceptible(index);
+		}
+	}
+	public void deathI() {
+		if (getI()>0) {
+			int index = getRandomI();
+			removeInfected(index);
+		}
+	}
+	public void deathR() {
+		if (getR()>0) {
+			int index = getRandomR();
+			removeRecovered(index);
+		}
+	}
+	public void swapS() {
+		if (getS()>0) {
+			int index = getRandomS();
+			hosts.reset(HostStore.SUSCEPTIBLE, index);
+		}
+	}
+	public void swapI() {
+		if (getI()>0) {
+			int index = getRandomI();
+			hosts.reset(HostStore.INFECTED, index);
+			hosts.move(HostStore.INFECTED, index, HostStore.SUSCEPTIBLE);
+			dropRecovery(index);
+		}
+	}
+	public void swapR() {
+		if (getR()>0) {
+			int index = getRandomR();
+			hosts.reset(HostStore.RECOVERED, index);
+			hosts.move(HostStore.RECOVERED, index, HostStore.SUSCEPTIBLE);
+		}
+	}
+	
 	// draw a Poisson distributed number of contacts
 	public void recordContacts() {
 		// each infected makes I->S contacts on a per-day rate of beta * S/N
-		double totalContactRate = getI() * getPrS() * Parameters.beta * Parameters.getSeasonality(deme) * Parameters.deltaT;
+		double totalContactRate = getI() * getPrS() * Parameters.beta * Parameters.getSeasonality(deme) * Parameters.stepSize;
 		contactRate = totalContactRate;
-		newContacts = Random.nextPoisson(totalContactRate);			
+		newContacts = random.nextPoisson(totalContactRate);			
 	}
 
 	// move from S->I following number of new contacts
 	public void distributeContacts() {
-		
+		if (Parameters.batchContacts) {
+			contactBatch();
+			return;
+		}
 		for (int i = 0; i < newContacts; i++) {
-			if (getS()>0 && getI()>0) {
-		
-				// get indices and objects
-				int index = getRandomI();
-				int sndex = getRandomS();			
-				Host iH = infecteds.get(index);			
-				Host sH = susceptibles.get(sndex);						
-				Virus v = iH.getInfection();
-					
-				// attempt infection
-				Phenotype p = v.getPhenotype();		
-				Phenotype[] history = sH.getHistory();
-				double chanceOfSuccess = p.riskOfInfection(history);
-				if (Random.nextBoolean(chanceOfSuccess)) {
-					sH.infect(v,deme);
-					removeSusceptible(sndex);
-					infecteds.add(sH);
-					cases++;
-				}
-				// If there is not fitness, assign now.
-				if (v.getFitness() == 0.0) {
-					double risk = getAverageRisk(p);
-					v.setFitness(risk);
+			contact();
+		}		
+	}
+	
+	// all of this step's contacts as one batch, each between a random infected and a random susceptible
+	// infecteds and susceptibles are those at the start of the batch, as in a leap
+	private void contactBatch() {
+		if (getS()>0 && getI()>0) {
+			int n = newContacts;
+			growBatch(n);
+			for (int k = 0; k < n; k++) {
+				batchNode[k] = hosts.getInfectionNode(getRandomI());
+				batchTarget[k] = getRandomS();
+			}
+			infectBatch(n);
+			// If there is not fitness, assign now.
+			for (int k = 0; k < n; k++) {
+				if (Genealogy.getFitness(batchNode[k]) == 0.0) {
+					assignFitness(Virus.of(batchNode[k]));
 				}
-			
 			}
-		}		
+		}
+	}
+	
+	// attempt the first n contacts of the batch
+	// risks are evaluated together from gathered ids, then outcomes are drawn in contact order,
+	// a susceptible contacted more than once being infected by the first contact that succeeds
+	// infections are applied in decreasing order of susceptible index, so removing one never moves another still to come
+	private void infectBatch(int n) {
+		for (int k = 0; k < n; k++) {
+			batchPhenotype[k] = PhenotypeTable.idOf(Genealogy.getPhenotype(batchNode[k]));
+			ImmuneHistory history = hosts.getImmuneHistory(HostStore.SUSCEPTIBLE, batchTarget[k]);
+			batchHistory[k] = history.getIds();
+			batchBounds[k] = history.getBounds();
+		}
+		PhenotypeTable.riskOfInfection(batchPhenotype, batchHistory, batchBounds, n, batchRisk);
+		int successes = 0;
+		for (int k = 0; k < n; k++) {
+			batchHistory[k] = null;
+			batchBounds[k] = null;
+			if (random.nextBoolean(batchRisk[k])) {
+				batchInfections[successes] = ((long) batchTarget[k] << 32) | k;
+				successes++;
+			}
+		}
+		Arrays.sort(batchInfections, 0, successes);
+		for (int i = successes - 1; i >= 0; i--) {
+			int sndex = (int) (batchInfections[i] >>> 32);
+			if (i > 0 && (int) (batchInfections[i - 1] >>> 32) == sndex) {
+				continue;
+			}
+			int k = (int) batchInfections[i];
+			hosts.infect(sndex, batchNode[k], deme);
+			scheduleRecovery();
+			cases++;
+		}
+	}
+	
+	private void growBatch(int n) {
+		if (batchNode.length < n) {
+			int capacity = Math.max(n, 2 * batchNode.length);
+			batchNode = new int[capacity];
+			batchTarget = new int[capacity];
+			batchPhenotype = new int[capacity];
+			batchHistory = new int[capacity][];
+			batchBounds = new double[capacity][];
+			batchRisk = new double[capacity];
+			batchInfections = new long[capacity];
+		}
+	}
+	
+	// a single contact between a random infected and a random susceptible
+	public void contact() {
+		if (getS()>0 && getI()>0) {
+	
+			// get indices and objects
+			int index = getRandomI();
+			int sndex = getRandomS();			
+			int node = hosts.getInfectionNode(index);
+				
+			// attempt infection
+			Phenotype p = Genealogy.getPhenotype(node);		
+			double chanceOfSuccess = hosts.riskOfInfection(p, HostStore.SUSCEPTIBLE, sndex);
+			if (random.nextBoolean(chanceOfSuccess)) {
+				hosts.infect(sndex, node, deme);
+				scheduleRecovery();
+				cases++;
+			}
+			// If there is not fitness, assign now.
+			if (Genealogy.getFitness(node) == 0.0) {
+				assignFitness(Virus.of(node));
+			}
 		
+		}
 	}
 	
 	// draw a Poisson distributed number of contacts and move from S->I based upon this
-	// this deme is susceptibles and other deme is infecteds
-	public void betweenDemeContact(HostPopulation hp) {
+	// this deme is susceptibles and other deme is infecteds, joined by a network edge of the given weight
+	public void betweenDemeContact(HostPopulation hp, double weight) {
+
+		RandomStream previous = Random.use(random);
 
 		// each infected makes I->S contacts on a per-day rate of beta * S/N
-		double totalContactRate = hp.getI() * getPrS() * Parameters.beta * Parameters.betweenDemePro * Parameters.getSeasonality(deme) * Parameters.deltaT;
-		int contacts = Random.nextPoisson(totalContactRate);
+		double totalContactRate = hp.getContactI() * getPrS() * Parameters.beta * Parameters.betweenDemePro * weight * Parameters.getSeasonality(deme) * Parameters.stepSize;
+		int contacts = random.nextPoisson(totalContactRate);
 		for (int i = 0; i < contacts; i++) {
-			if (getS()>0 && hp.getI()>0) {
+			importContact(hp);
+		}		
 		
-				// get indices and objects
-				Host iH = hp.getRandomHostI();
-				int sndex = getRandomS();
-				Host sH = susceptibles.get(sndex);
-				Virus v = iH.getInfection();
-				
-				// attempt infection
-				Phenotype p = v.getPhenotype();
-				Phenotype[] history = sH.getHistory();
-				double chanceOfSuccess = p.riskOfInfection(history);
-				if (Random.nextBoolean(chanceOfSuccess)) {
-					sH.infect(v,deme);
-					removeSusceptible(sndex);
-					infecteds.add(sH);
-					cases++;
+		Random.use(previous);
+		
+	}	
+	
+	// all between-deme contact into this deme in one draw, used in place of betweenDemeContact when aggregateImports is set
+	// the total force of infection sums source prevalences over incoming network edges,
+	// and the source of each contact is then drawn from an alias table over those edges
+	public void aggregateImport(List<HostPopulation> demes, DemeNetwork network) {
+
+		RandomStream previous = Random.use(random);
+
+		int start = network.getInStart(deme);
+		int edges = network.getInStart(deme + 1) - start;
+		if (importWeights.length < edges) {
+			importWeights = new double[edges];
+		}
+		for (int k = 0; k < edges; k++) {
+			HostPopulation hp = demes.get(network.getSource(start + k));
+			importWeights[k] = hp.getContactI() * network.getWeight(start + k);
+		}
+		importSources.build(importWeights, edges);
+
+		double totalContactRate = importSources.getTotal() * getPrS() * Parameters.beta * Parameters.betweenDemePro * Parameters.getSeasonality(deme) * Parameters.stepSize;
+		int contacts = random.nextPoisson(totalContactRate);
+		if (Parameters.batchContacts) {
+			if (getS()>0) {
+				growBatch(contacts);
+				for (int k = 0; k < contacts; k++) {
+					int e = start + importSources.sample(random);
+					batchNode[k] = demes.get(network.getSource(e)).getRandomContactNode();
+					batchTarget[k] = getRandomS();
 				}
+				infectBatch(contacts);
+			}
+		} else {
+			for (int i = 0; i < contacts; i++) {
+				int e = start + importSources.sample(random);
+				importContact(demes.get(network.getSource(e)));
+			}
+		}
+
+		Random.use(previous);
+
+	}
+
+	// a single contact between a random infected of deme hp and a random susceptible of this deme
+	public void importContact(HostPopulation hp) {
+		if (getS()>0 && hp.getContactI()>0) {
+	
+			// get indices and objects
+			int node = hp.getRandomContactNode();
+			int sndex = getRandomS();
 			
+			// attempt infection
+			Phenotype p = Genealogy.getPhenotype(node);
+			double chanceOfSuccess = hosts.riskOfInfection(p, HostStore.SUSCEPTIBLE, sndex);
+			if (random.nextBoolean(chanceOfSuccess)) {
+				hosts.infect(sndex, node, deme);
+				scheduleRecovery();
+				cases++;
 			}
-		}		
 		
-	}	
+		}
+	}
 	
-	// draw a Poisson distributed number of recoveries
+	// draw a Poisson distributed number of recoveries, unless recoveries are scheduled
 	public void recordRecoveries() {	
+		if (recoveries != null) {
+			return;
+		}
 		// each infected recovers at a per-day rate of nu
-		double totalRecoveryRate = getI() * Parameters.nu * Parameters.deltaT;
-		newRecoveries = Random.nextPoisson(totalRecoveryRate);	
+		double totalRecoveryRate = getI() * Parameters.nu * Parameters.stepSize;
+		newRecoveries = random.nextPoisson(totalRecoveryRate);	
 	}
 	
 	// move from I->S following number of recoveries
+	// or, when recoveries are scheduled, every infected due to recover before the end of this step
 	public void distributeRecoveries() {
-
-		for (int i = 0; i < newRecoveries; i++) {
-			if (getI()>0) {
-				int index = getRandomI();
-				Host h = infecteds.get(index);
-				h.clearInfection();
-				removeInfected(index);
-				if (Parameters.transcendental) {
-					recovereds.add(h);
-				} else {
-					susceptibles.add(h);
-				}
-
+		if (recoveries != null) {
+			for (int handle : recoveries.takeDue(Parameters.day + Parameters.stepSize)) {
+				recover(recoveries.indexOf(handle));
 			}
+			return;
+		}
+		for (int i = 0; i < newRecoveries; i++) {
+			recovery();
 		}			
 	}
 	
+	// a single random infected recovers
+	public void recovery() {
+		if (getI()>0) {
+			int index = getRandomI();
+			recover(index);
+		}
+	}
+	
+	private void recover(int index) {
+		if (Parameters.transcendental) {
+			hosts.recover(index, HostStore.RECOVERED);
+		} else {
+			hosts.recover(index, HostStore.SUSCEPTIBLE);
+		}
+		dropRecovery(index);
+	}
+	
+	// the host just added to the end of the infected compartment draws the day it will recover
+	private void scheduleRecovery() {
+		if (recoveries != null) {
+			recoveries.add(Parameters.day + drawInfectiousPeriod());
+		}
+	}
+	
+	// infected i has left the infected compartment, by recovery or otherwise
+	private void dropRecovery(int i) {
+		if (recoveries != null) {
+			recoveries.remove(i);
+		}
+	}
+	
+	// infectious period in days, with mean 1/nu whatever its distribution
+	private double drawInfectiousPeriod() {
+		double mean = 1.0 / Parameters.nu;
+		if (Parameters.infectiousPeriod.equals("fixed")) {
+			return mean;
+		}
+		if (Parameters.infectiousPeriod.equals("erlang")) {
+			int shape = Parameters.infectiousPeriodShape;
+			return random.nextGamma(shape, mean / shape);
+		}
+		return random.nextExponential(mean);
+	}
+	
 	// draw a Poisson distributed number of R->S 
 	public void loseImmunity() {
 		// each recovered regains immunity at a per-day rate
-		double totalReturnRate = getR() * Parameters.immunityLoss * Parameters.deltaT;
-		int returns = Random.nextPoisson(totalReturnRate);
+		double totalReturnRate = getR() * Parameters.immunityLoss * Parameters.stepSize;
+		int returns = random.nextPoisson(totalReturnRate);
 		for (int i = 0; i < returns; i++) {
-			if (getR()>0) {
-				int index = getRandomR();
-				Host h = recovereds.get(index);
-				removeRecovered(index);
-				susceptibles.add(h);
-			}
+			immunityLoss();
 		}			
 	}	
+	
+	// a single random recovered returns to the susceptible class
+	public void immunityLoss() {
+		if (getR()>0) {
+			int index = getRandomR();
+			hosts.move(HostStore.RECOVERED, index, HostStore.SUSCEPTIBLE);
+		}
+	}
 
 	// draw a Poisson distributed number of waning events
 	public void waneImmunity() {
 		// each host wanes at a per-day rate of waningRate
-		double totalWaningRate = getN() * Parameters.waningRate * Parameters.deltaT;		
-		int wanings = Random.nextPoisson(totalWaningRate);
+		double totalWaningRate = getN() * Parameters.waningRate * Parameters.stepSize;		
+		int wanings = random.nextPoisson(totalWaningRate);
 		for (int i = 0; i < wanings; i++) {
-			Host h = getRandomHost();
-			h.waneImmunity();
+			waning();
 		}	
 	}	
 	
+	// a single random host loses a random phenotype from its immune history
+	public void waning() {
+		int c = getRandomCompartment();
+		int index = random.nextInt(0,hosts.size(c)-1);
+		hosts.waneImmunity(c, index);
+	}
+	
 	// draw a Poisson distributed number of mutations and mutate based upon this
 	// mutation should not impact other Virus's Phenotypes through reference
 	public void mutate() {
 		// each infected mutates at a per-day rate of mu
-		double totalMutationRate = getI() * Parameters.muPhenotype * Parameters.deltaT;
-		int mutations = Random.nextPoisson(totalMutationRate);
+		double totalMutationRate = getI() * Parameters.muPhenotype * Parameters.stepSize;
+		int mutations = random.nextPoisson(totalMutationRate);
 		for (int i = 0; i < mutations; i++) {
-			if (getI()>0) {
-				int index = getRandomI();
-				Host h = infecteds.get(index);
-				Virus v = h.mutate();
-				Phenotype p = v.getPhenotype();
-				double risk = getAverageRisk(p);
-				v.setFitness(risk);
-			}
+			mutation();
 		}			
 	}	
 	
+	// a single random infected has its virus mutated
+	public void mutation() {
+		if (getI()>0) {
+			int index = getRandomI();
+			Virus v = hosts.mutate(index);
+			assignFitness(v);
+		}
+	}
+	
+	// assign fitness to v now, or leave it pending on the next immunity snapshot of this deme
+	private void assignFitness(Virus v) {
+		if (Parameters.lazyFitness) {
+			LazyFitness.request(v);
+		} else if (landscape != null) {
+			v.setFitness(landscape.getAverageRisk(v.getPhenotype()));
+		} else {
+			double risk = getAverageRisk(v.getPhenotype(), true);
+			v.setFitness(risk);
+		}
+	}
+	
 	// Get average infection risk of a phenotype amongst a given sample size
-	private double getAverageRisk(Phenotype p) {
+	// or from the distinct immune histories of the deme, exactly when there are no more of them than the sample size
+	// and otherwise from a sample of them, see ImmuneHistory.getSampledRisk
+	// risks are kept in the immune histories' caches only if cache is set, so phenotypes evaluated once leave them alone
+	private double getAverageRisk(Phenotype p, boolean cache) {
+		if (Parameters.immunitySummary) {
+			ImmuneHistory root = hosts.getHistoryRoot();
+			if (root.getLiveCount() <= Parameters.fitnessSampleSize) {
+				return root.getAverageRisk(p, cache);
+			}
+			return root.getSampledRisk(p, Parameters.fitnessSampleSize, random, cache);
+		}
 		double sampleSize = (double) Parameters.fitnessSampleSize;
 		double averageRisk = 0;
 		for (int i = 0; i < Parameters.fitnessSampleSize; i++) {
-			Host h = getRandomHost();
-			Phenotype[] history = h.getHistory();
-			averageRisk += p.riskOfInfection(history);
+			int c = getRandomCompartment();
+			int index = random.nextInt(0,hosts.size(c)-1);
+			if (cache) {
+				averageRisk += hosts.riskOfInfection(p, c, index);
+			} else {
+				averageRisk += hosts.getImmuneHistory(c, index).riskOfInfection(p, false);
+			}
 		}
 		averageRisk /= sampleSize;
 		return averageRisk;
@@ -496,29 +852,41 @@ public class HostPopulation {
 	public void sample() {
 		if (getI()>0 && Parameters.day >= Parameters.burnin) {
 		
-			double totalSamplingRate = Parameters.tipSamplingRate * Parameters.deltaT;
+			double totalSamplingRate = Parameters.tipSamplingRate * Parameters.stepSize;
 			if (Parameters.tipSamplingProportional) {
 				totalSamplingRate *= getI();
 			} 
 			
-			int samples = Random.nextPoisson(totalSamplingRate);
+			int samples = random.nextPoisson(totalSamplingRate);
 			for (int i = 0; i < samples; i++) {
-				int index = getRandomI();
-				Host h = infecteds.get(index);
-				Virus v = h.getInfection();
-				Phenotype p = v.getPhenotype();
-				double risk = getAverageRisk(p);
-				v.setFitness(risk);
-				VirusTree.add(v);
+				sampling();
 			}	
 		}
 	}
+	
+	// a single random infection is sampled
+	public void sampling() {
+		if (getI()>0) {
+			int index = getRandomI();
+			Virus v = hosts.getInfection(index);
+			assignFitness(v);
+			sampled.add(v);
+		}
+	}
+	
+	// pass this step's samples on to VirusTree
+	// called from a single thread in deme order so that the tip order does not depend on scheduling
+	public void flushSamples() {
+		for (Virus v : sampled) {
+			VirusTree.add(v);
+		}
+		sampled.clear();
+	}
 		
 	// through current infected population assigning ancestry as trunk
 	public void makeTrunk() {
 		for (int i = 0; i < getI(); i++) {
-			Host h = infecteds.get(i);
-			Virus v = h.getInfection();
+			Virus v = hosts.getInfection(i);
 			v.makeTrunk();
 			while (v.getParent() != null) {
 				v = v.getParent();
@@ -538,42 +906,42 @@ public class HostPopulation {
 		antigenicDiversity = 0.0;		
 		netau = 0.0;
 		serialInterval = 0.0;
+		statistics.clear();
 		
 		if (getI()>1) { 
 		
-			double coalCount = 0.0;	
-			double coalOpp = 0.0;
-			double coalWindow = Parameters.netauWindow / 365.0;
 			int sampleCount = Parameters.diversitySamplingCount;
-			
 			for (int i = 0; i < sampleCount; i++) {
 				Virus vA = getRandomInfection();
 				Virus vB = getRandomInfection();
 				if (vA != null && vB != null) {
-					double dist = vA.distance(vB);
-					diversity += dist;
-					if (dist > tmrca) {
-						tmrca = dist;
-					}
-					antigenicDiversity += vA.antigenicDistance(vB);
-					coalOpp += coalWindow;
-					coalCount += vA.coalescence(vB, coalWindow);
-					serialInterval += vA.serialInterval();
+					statistics.add(vA, vB);
 				}
 			}	
 		
-			diversity /= sampleCount;
-			tmrca /= 2.0;
-			antigenicDiversity /= sampleCount;
-			netau = coalOpp / coalCount;
-			serialInterval /= sampleCount;
+			diversity = statistics.getDiversity();
+			tmrca = statistics.getTmrca();
+			antigenicDiversity = statistics.getAntigenicDiversity();
+			netau = statistics.getNetau();
+			serialInterval = statistics.getSerialInterval();
 		
+		} else if (getI() == 1) {
+			// a lone infection still has its share of pooled pairs, all of them with itself
+			Virus v = hosts.getInfection(0);
+			statistics.add(v, v);
 		}
 		
 	}	
+	
+	// pairs drawn by the last updateDiversity
+	public LineageStatistics getStatistics() {
+		return statistics;
+	}
 		
 	public void printState(PrintStream stream) {
-		updateDiversity();
+		if (!Parameters.pooledDiversity) {
+			updateDiversity();
+		}
 		stream.printf("\t%.4f\t%.4f\t%.4f\t%.5f\t%.4f\t%d\t%d\t%d\t%d\t%d", getDiversity(), getTmrca(), getNetau(), getSerialInterval(), getAntigenicDiversity(), getN(), getS(), getI(), getR(), getCases());
 	}	
 	
@@ -584,10 +952,17 @@ public class HostPopulation {
 	// reset population to factory condition
 	public void reset() {
 	
+		RandomStream previous = Random.use(random);
+	
 		// clearing lists
-		susceptibles.clear();
-		infecteds.clear();
-		recovereds.clear();
+		hosts.clear();
+		sampled.clear();
+		if (recoveries != null) {
+			recoveries.clear();
+		}
+		if (landscape != null) {
+			landscape.clear();
+		}
 		
 		int initialR = 0;
 		if (Parameters.transcendental) {
@@ -597,14 +972,12 @@ public class HostPopulation {
 		// fill population with susceptibles
 		int initialS = Parameters.initialNs[deme] - Parameters.initialI - initialR;
 		for (int i = 0; i < initialS; i++) {
-			Host h = new Host();			
-			susceptibles.add(h);
+			hosts.addNaive(HostStore.SUSCEPTIBLE);
 		}
 		
 		// fill population with recovereds
 		for (int i = 0; i < initialR; i++) {
-			Host h = new Host();			
-			recovereds.add(h);
+			hosts.addNaive(HostStore.RECOVERED);
 		}		
 		
 		if (deme == Parameters.initialDeme - 1) {
@@ -612,12 +985,14 @@ public class HostPopulation {
 			// infect some individuals
 			for (int i = 0; i < 3*Parameters.initialI; i++) {
 				Virus v = new Virus(Parameters.urVirus, deme);
-				Host h = new Host(v);
-				infecteds.add(h);
+				hosts.addInfected(v);
+				scheduleRecovery();
 			}	
 		
 		}
 		
+		Random.use(previous);
+		
 	}
 	
 	public void printHostImmuneHistories(PrintStream stream, int n){
@@ -635,7 +1010,7 @@ public class HostPopulation {
 		
 		// step through susceptibles and print
 		for (int i = 0; i < getS(); i++) {
-			Host h = susceptibles.get(i);
+			Host h = hosts.getHost(HostStore.SUSCEPTIBLE, i);
 			stream.print(deme + ":");
 			h.printInfection(stream);
 			stream.print(":");
@@ -645,7 +1020,7 @@ public class HostPopulation {
 		
 		// step through infecteds and print
 		for (int i = 0; i < getI(); i++) {
-			Host h = infecteds.get(i);
+			Host h = hosts.getHost(HostStore.INFECTED, i);
 			stream.print(deme + ":");
 			h.printInfection(stream);
 			stream.print(":");
@@ -655,7 +1030,7 @@ public class HostPopulation {
 		
 		// step through recovereds and print
 		for (int i = 0; i < getR(); i++) {
-			Host h = recovereds.get(i);
+			Host h = hosts.getHost(HostStore.RECOVERED, i);
 			stream.print(deme + ":");
 			h.printInfection(stream);
 			stream.print(":");
@@ -0,0 +1,68 @@
+/* Interface for the storage of one deme's hosts */
+/* Hosts sit in susceptible, infected or recovered compartments and are addressed by compartment and index */
+/* Indices are dense, removing a host moves the last host of its compartment into its place */
+/* Draws needed by host operations come from the stream bound to the calling thread, as in Host */
+
+public interface HostStore {
+
+	int SUSCEPTIBLE = 0;
+	int INFECTED = 1;
+	int RECOVERED = 2;
+
+	// number of hosts in compartment c
+	int size(int c);
+
+	// add a naive host to compartment c, which may start with immunity as in Host()
+	void addNaive(int c);
+
+	// add a host infected with v, which may start with immunity as in Host(v)
+	void addInfected(Virus v);
+
+	// add a copy of host h, used when reading checkpoints
+	void add(int c, Host h);
+
+	// remove host i of compartment c
+	void remove(int c, int i);
+
+	// move host i of compartment from to the end of compartment to
+	void move(int from, int i, int to);
+
+	// clear infection and immune history of host i of compartment c, leaving it in place
+	void reset(int c, int i);
+
+	// infection of host i of the infected compartment
+	Virus getInfection(int i);
+
+	// Genealogy node of the infection of host i of the infected compartment
+	int getInfectionNode(int i);
+
+	// susceptible host i is infected by a descendent of Genealogy node parent and moves to the end of the infected compartment
+	void infect(int i, int parent, int deme);
+
+	// infected host i has its virus replaced by a mutated copy, which is returned
+	Virus mutate(int i);
+
+	// infected host i adds its virus to its immune history and moves to the end of compartment to
+	void recover(int i, int to);
+
+	// risk that a virus with phenotype p infects host i of compartment c
+	double riskOfInfection(Phenotype p, int c, int i);
+
+	int getHistoryLength(int c, int i);
+
+	// host i of compartment c loses a random phenotype from its immune history
+	void waneImmunity(int c, int i);
+
+	// interned immune history of host i of compartment c
+	ImmuneHistory getImmuneHistory(int c, int i);
+
+	// root of the interned immune histories of this store's hosts, which summarises their immunity
+	ImmuneHistory getHistoryRoot();
+
+	// a Host for code that works on host objects, only guaranteed to be a read-only snapshot
+	Host getHost(int c, int i);
+
+	// remove all hosts
+	void clear();
+
+}
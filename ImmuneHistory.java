@@ -0,0 +1,334 @@
+/* An immutable immune history, shared by every host of a deme that has been infected by the same phenotypes in the same order */
+/* Histories form a tree from an empty root, adding a phenotype returns the cached child rather than copying the history */
+/* Nodes count the hosts holding them and leave the tree once no host holds them or any of their descendants */
+/* The root keeps the nodes currently held by hosts, a weighted summary of the immunity of its population */
+/* and gives each an id that stays fixed while it is held, so that a store can hold histories as ints */
+/* Phenotypes are held as PhenotypeTable ids, the Phenotype objects are only kept as the edges of the tree */
+/* Each deme has its own tree, so nodes are only ever touched by the thread stepping that deme */
+
+import java.util.*;
+
+public class ImmuneHistory {
+
+	private static final int CACHE_SIZE = 8;
+	private static final int BOUNDED_LENGTH = 8;		// histories at least this long keep bounds of their coordinates
+
+	// fields
+	private ImmuneHistory parent;
+	private ImmuneHistory root;
+	private Phenotype last;								// most recent phenotype, the edge from parent
+	private int[] ids;									// PhenotypeTable ids of this history, oldest first, never modified
+	private Map<Phenotype, ImmuneHistory> children = new HashMap<>();
+	private int hosts = 0;								// hosts holding this node
+	private int liveIndex = -1;							// position in the root's live nodes, -1 if no host holds it
+	private int id = -1;								// slot in the root's table, which unlike liveIndex never moves, -1 if no host holds it
+	private ImmuneHistory[] live;						// root only: nodes held by at least one host
+	private int liveCount;
+	private int liveHosts;								// root only: hosts holding any node
+	private FenwickTree liveWeights;					// root only: hosts of each live node by position, made on the first getSampledRisk
+	private ImmuneHistory[] table;						// root only: live nodes by id, the slots of released nodes are reused
+	private int tableSize;
+	private int[] freeIds;
+	private int freeIdCount;
+	private Phenotype[] cachedPhenotype;				// recent riskOfInfection results, direct mapped by phenotype
+	private double[] cachedRisk;
+	private double[] bounds;							// from PhenotypeTable.boundsOf, made on first use
+
+	// empty root history
+	public ImmuneHistory() {
+		root = this;
+		ids = new int[0];
+		live = new ImmuneHistory[16];
+		table = new ImmuneHistory[16];
+		freeIds = new int[16];
+	}
+
+	private ImmuneHistory(ImmuneHistory parent, Phenotype p) {
+		this.parent = parent;
+		root = parent.root;
+		last = p;
+		ids = Arrays.copyOf(parent.ids, parent.ids.length + 1);
+		ids[parent.ids.length] = PhenotypeTable.idOf(p);
+	}
+
+	// methods
+
+	// this history as a new array of phenotypes, oldest first
+	public Phenotype[] getPhenotypes() {
+		Phenotype[] phenotypes = new Phenotype[ids.length];
+		ImmuneHistory node = this;
+		for (int i = ids.length - 1; i >= 0; i--) {
+			phenotypes[i] = node.last;
+			node = node.parent;
+		}
+		return phenotypes;
+	}
+
+	public int[] getIds() {
+		return ids;
+	}
+
+	public int length() {
+		return ids.length;
+	}
+
+	// bounds of the coordinates of this history, null if it is too short for them to be worth checking
+	// only to be called by the thread stepping this history's deme
+	public double[] getBounds() {
+		if (bounds == null && ids.length >= BOUNDED_LENGTH) {
+			bounds = PhenotypeTable.boundsOf(ids);
+		}
+		return bounds;
+	}
+
+	public ImmuneHistory getRoot() {
+		return root;
+	}
+
+	public int getHosts() {
+		return hosts;
+	}
+
+	// id of this history under its root, kept for as long as any host holds it
+	public int getId() {
+		return id;
+	}
+
+	// a new host takes a reference to this history
+	public ImmuneHistory retain() {
+		if (hosts == 0) {
+			root.addLive(this);
+		}
+		hosts++;
+		root.liveHosts++;
+		if (root.liveWeights != null) {
+			root.liveWeights.add(liveIndex, 1);
+		}
+		return this;
+	}
+
+	// a host drops its reference, unlinking this node and possibly its ancestors once unused
+	public void release() {
+		hosts--;
+		root.liveHosts--;
+		if (root.liveWeights != null) {
+			root.liveWeights.add(liveIndex, -1);
+		}
+		if (hosts == 0) {
+			root.removeLive(this);
+			prune();
+		}
+	}
+
+	// the following move the caller's reference from this history to the one returned
+
+	// this history followed by p
+	// compacted when historyMergeDistance or historyMaxLength are set: an entry closer to p than historyMergeDistance
+	// is dropped in favour of p, and then the oldest entries while longer than historyMaxLength
+	// merging moves risk of infection by at most smithConversion * historyMergeDistance, as only the closest entry counts
+	public ImmuneHistory add(Phenotype p) {
+		int merged = nearest(p);
+		int excess = 0;
+		if (Parameters.historyMaxLength > 0) {
+			int kept = (merged < 0) ? ids.length : ids.length - 1;
+			excess = Math.max(0, kept + 1 - Parameters.historyMaxLength);
+		}
+		ImmuneHistory node = this;
+		if (merged >= 0 || excess > 0) {
+			Phenotype[] phenotypes = getPhenotypes();
+			node = getRoot();
+			for (int i = 0; i < phenotypes.length; i++) {
+				if (i == merged) {
+					continue;
+				}
+				if (excess > 0) {
+					excess--;
+					continue;
+				}
+				node = node.child(phenotypes[i]);
+			}
+		}
+		ImmuneHistory child = node.child(p).retain();
+		release();
+		return child;
+	}
+
+	// this history without its entry at index
+	public ImmuneHistory remove(int index) {
+		Phenotype[] phenotypes = getPhenotypes();
+		ImmuneHistory node = getRoot();
+		for (int i = 0; i < phenotypes.length; i++) {
+			if (i != index) {
+				node = node.child(phenotypes[i]);
+			}
+		}
+		node.retain();
+		release();
+		return node;
+	}
+
+	// the empty history
+	public ImmuneHistory clear() {
+		root.retain();
+		release();
+		return root;
+	}
+
+	// the same phenotypes as history, interned under this root
+	public ImmuneHistory intern(Phenotype[] history) {
+		ImmuneHistory node = this;
+		for (Phenotype p : history) {
+			node = node.child(p);
+		}
+		return node.retain();
+	}
+
+	// risk of infection of a virus with phenotype p, computed once per phenotype while it stays in the cache
+	public double riskOfInfection(Phenotype p) {
+		return riskOfInfection(p, true);
+	}
+
+	// the same, computed afresh and leaving the cache as it was unless cache is set
+	// for phenotypes evaluated once, which would only evict the phenotypes of viruses
+	public double riskOfInfection(Phenotype p, boolean cache) {
+		if (!cache) {
+			return PhenotypeTable.riskOfInfection(p, ids, getBounds());
+		}
+		if (cachedPhenotype == null) {
+			cachedPhenotype = new Phenotype[CACHE_SIZE];
+			cachedRisk = new double[CACHE_SIZE];
+		}
+		int slot = System.identityHashCode(p) & (CACHE_SIZE - 1);
+		if (cachedPhenotype[slot] != p) {
+			cachedPhenotype[slot] = p;
+			cachedRisk[slot] = PhenotypeTable.riskOfInfection(p, ids, getBounds());
+		}
+		return cachedRisk[slot];
+	}
+
+	// the following are only meaningful on the root
+
+	// number of distinct histories held by hosts
+	public int getLiveCount() {
+		return liveCount;
+	}
+
+	// live node i, for 0 <= i < getLiveCount()
+	public ImmuneHistory getLive(int i) {
+		return live[i];
+	}
+
+	// live node with the given id
+	public ImmuneHistory get(int id) {
+		return table[id];
+	}
+
+	// exact mean risk of infection of a virus with phenotype p over every host holding a history under this root
+	// costs one cached risk evaluation per distinct history rather than one per host
+	// with the nodes' caches left as they were unless cache is set
+	public double getAverageRisk(Phenotype p, boolean cache) {
+		double risk = 0.0;
+		for (int i = 0; i < liveCount; i++) {
+			ImmuneHistory node = live[i];
+			risk += node.hosts * node.riskOfInfection(p, cache);
+		}
+		return risk / liveHosts;
+	}
+
+	// mean risk of infection of p over samples live nodes drawn in proportion to their hosts, as drawing hosts would,
+	// each node evaluated once while p stays in its cache, if cache is set
+	// unbiased for getAverageRisk, and as risks lie in [0, 1] it is off by more than e with probability at most
+	// 2 exp(-2 samples e^2), whatever the number of distinct histories
+	public double getSampledRisk(Phenotype p, int samples, RandomStream random, boolean cache) {
+		if (liveWeights == null) {
+			liveWeights = new FenwickTree();
+			for (int i = 0; i < liveCount; i++) {
+				liveWeights.set(i, live[i].hosts);
+			}
+		}
+		double risk = 0.0;
+		for (int i = 0; i < samples; i++) {
+			ImmuneHistory node = live[liveWeights.find(random.nextInt(0, liveHosts - 1))];
+			risk += node.riskOfInfection(p, cache);
+		}
+		return risk / samples;
+	}
+
+	private void addLive(ImmuneHistory node) {
+		if (liveCount == live.length) {
+			live = Arrays.copyOf(live, 2 * liveCount);
+		}
+		live[liveCount] = node;
+		node.liveIndex = liveCount;
+		liveCount++;
+		if (freeIdCount > 0) {
+			freeIdCount--;
+			node.id = freeIds[freeIdCount];
+		} else {
+			if (tableSize == table.length) {
+				table = Arrays.copyOf(table, 2 * tableSize);
+			}
+			node.id = tableSize;
+			tableSize++;
+		}
+		table[node.id] = node;
+	}
+
+	private void removeLive(ImmuneHistory node) {
+		liveCount--;
+		ImmuneHistory moved = live[liveCount];
+		live[node.liveIndex] = moved;
+		moved.liveIndex = node.liveIndex;
+		if (liveWeights != null) {
+			liveWeights.set(node.liveIndex, moved.hosts);
+			liveWeights.set(liveCount, 0);
+		}
+		live[liveCount] = null;
+		node.liveIndex = -1;
+		if (freeIdCount == freeIds.length) {
+			freeIds = Arrays.copyOf(freeIds, 2 * freeIdCount);
+		}
+		freeIds[freeIdCount] = node.id;
+		freeIdCount++;
+		table[node.id] = null;
+		node.id = -1;
+	}
+
+	// unlink this node, and then its ancestors, while no host holds them or any of their descendants
+	private void prune() {
+		if (hosts == 0 && children.isEmpty() && parent != null) {
+			parent.children.remove(last);
+			parent.prune();
+		}
+	}
+
+	// index of the entry closest to p and nearer than historyMergeDistance, -1 if there is none
+	private int nearest(Phenotype p) {
+		double closest = Parameters.historyMergeDistance;
+		if (closest <= 0.0 || ids.length == 0) {
+			return -1;
+		}
+		int id = PhenotypeTable.idOf(p);
+		int nearest = -1;
+		for (int i = 0; i < ids.length; i++) {
+			double distance = PhenotypeTable.distance(ids[i], id);
+			if (distance < closest) {
+				closest = distance;
+				nearest = i;
+			}
+		}
+		return nearest;
+	}
+
+	// cached child, created on first use
+	// stays in the tree while it or any of its descendants is held by a host
+	private ImmuneHistory child(Phenotype p) {
+		ImmuneHistory child = children.get(p);
+		if (child == null) {
+			child = new ImmuneHistory(this, p);
+			children.put(p, child);
+		}
+		return child;
+	}
+
+}
@@ -0,0 +1,95 @@
+/* A binary min-heap over a fixed set of indices 0..n-1, each holding a double key */
+/* Keys can be changed in place, the heap is restored in O(log n) from the index's known position */
+/* Used by the next reaction engine to find the channel with the earliest putative firing time */
+
+public class IndexedPriorityQueue {
+
+	// fields
+	private double[] keys;		// key of each index
+	private int[] heap;			// heap[k] is the index held at heap position k
+	private int[] position;		// position[i] is the heap position of index i
+
+	// constructor, every index starts with an infinite key
+	public IndexedPriorityQueue(int n) {
+		keys = new double[n];
+		heap = new int[n];
+		position = new int[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = Double.POSITIVE_INFINITY;
+			heap[i] = i;
+			position[i] = i;
+		}
+	}
+
+	// methods
+
+	public int size() {
+		return keys.length;
+	}
+
+	// index with the smallest key
+	public int peek() {
+		return heap[0];
+	}
+
+	// smallest key
+	public double peekKey() {
+		return keys[heap[0]];
+	}
+
+	public double getKey(int i) {
+		return keys[i];
+	}
+
+	// set the key of index i and move it up or down the heap as needed
+	public void update(int i, double key) {
+		double old = keys[i];
+		keys[i] = key;
+		if (key < old) {
+			siftUp(position[i]);
+		} else if (key > old) {
+			siftDown(position[i]);
+		}
+	}
+
+	private void siftUp(int k) {
+		while (k > 0) {
+			int parent = (k - 1) / 2;
+			if (keys[heap[parent]] <= keys[heap[k]]) {
+				break;
+			}
+			swap(k, parent);
+			k = parent;
+		}
+	}
+
+	private void siftDown(int k) {
+		int n = heap.length;
+		while (true) {
+			int left = 2 * k + 1;
+			if (left >= n) {
+				break;
+			}
+			int child = left;
+			int right = left + 1;
+			if (right < n && keys[heap[right]] < keys[heap[left]]) {
+				child = right;
+			}
+			if (keys[heap[k]] <= keys[heap[child]]) {
+				break;
+			}
+			swap(k, child);
+			k = child;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int ia = heap[a];
+		int ib = heap[b];
+		heap[a] = ib;
+		heap[b] = ia;
+		position[ib] = a;
+		position[ia] = b;
+	}
+
+}
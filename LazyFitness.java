@@ -0,0 +1,162 @@
+/* Deferred fitness evaluation, used in place of getAverageRisk when Parameters.lazyFitness is set */
+/* A virus whose fitness is needed is only marked pending, remembering the next immunity snapshot of its deme */
+/* Snapshots are taken every printStep and hold a deme's distinct immune histories with their host counts */
+/* or, if there are more than fitnessSampleSize of them, the histories of fitnessSampleSize random hosts */
+/* Fitness is then computed only for viruses that reach the output, in one parallel pass at the end */
+/* or for pending viruses that survive a sweep of the genealogy, after which the snapshots taken so far are dropped */
+/* so that they do not hold on to immune histories, and with them phenotypes, for the rest of the run */
+/* Completely static class, allows no instances to be instantiated */
+
+import java.util.*;
+
+public class LazyFitness {
+
+	// fields
+	private static List<List<Snapshot>> snapshots = new ArrayList<>();	// per deme, in the order taken
+	private static boolean[] pending = new boolean[0];					// per deme, whether any virus waits on the next snapshot
+	private static int[][] requested = new int[0][];					// per deme, nodes marked pending since the last sweep
+	private static int[] requestedCount = new int[0];
+
+	// methods
+
+	// forget all snapshots, ready for Parameters.demeCount demes
+	public static void clear() {
+		snapshots = new ArrayList<>();
+		for (int i = 0; i < Parameters.demeCount; i++) {
+			snapshots.add(new ArrayList<>());
+		}
+		pending = new boolean[Parameters.demeCount];
+		requested = new int[Parameters.demeCount][16];
+		requestedCount = new int[Parameters.demeCount];
+	}
+
+	// mark the fitness of v as pending on the next snapshot of its deme
+	// only called by the thread stepping that deme
+	public static void request(Virus v) {
+		int deme = v.getDeme();
+		v.setFitness(Double.NaN);
+		v.setFitnessSnapshot(snapshots.get(deme).size());
+		pending[deme] = true;
+		if (requestedCount[deme] == requested[deme].length) {
+			requested[deme] = Arrays.copyOf(requested[deme], 2 * requestedCount[deme]);
+		}
+		requested[deme][requestedCount[deme]] = v.getNode();
+		requestedCount[deme]++;
+	}
+
+	public static boolean isPending(Virus v) {
+		return Double.isNaN(v.getFitness());
+	}
+
+	// record the current immunity of hp, if any virus is waiting on it
+	public static void snapshot(HostPopulation hp) {
+		int deme = hp.getDeme();
+		Snapshot s = null;
+		if (pending[deme]) {
+			s = new Snapshot(hp);
+			pending[deme] = false;
+		}
+		snapshots.get(deme).add(s);
+	}
+
+	// compute the fitness of every pending virus in viruses
+	public static void resolve(Collection<Virus> viruses) {
+		Set<Virus> distinct = new HashSet<>();
+		for (Virus v : viruses) {
+			if (isPending(v)) {
+				distinct.add(v);
+			}
+		}
+		distinct.parallelStream().forEach(v -> v.setFitness(getFitness(v)));
+	}
+
+	// called straight after a sweep of the genealogy
+	// computes the fitness of every pending virus the sweep kept whose snapshot has been taken, and drops every snapshot
+	// the viruses swept never reach the output, and those still waiting on a snapshot are left pending
+	public static void resolveKept() {
+		List<Virus> due = new ArrayList<>();
+		for (int deme = 0; deme < requested.length; deme++) {
+			int taken = snapshots.get(deme).size();
+			int waiting = 0;
+			for (int k = 0; k < requestedCount[deme]; k++) {
+				int node = requested[deme][k];
+				if (Genealogy.isFree(node) || !Double.isNaN(Genealogy.getFitness(node))) {
+					continue;
+				}
+				if (Genealogy.getFitnessSnapshot(node) < taken) {
+					due.add(Virus.of(node));
+				} else {
+					requested[deme][waiting] = node;
+					waiting++;
+				}
+			}
+			requestedCount[deme] = waiting;
+		}
+		resolve(due);
+		for (List<Snapshot> list : snapshots) {
+			Collections.fill(list, null);
+		}
+	}
+
+	// average risk of infection of v's phenotype against the snapshot it waits on
+	// a virus requested after the last snapshot uses the last one
+	private static double getFitness(Virus v) {
+		List<Snapshot> list = snapshots.get(v.getDeme());
+		int index = Math.min(v.getFitnessSnapshot(), list.size() - 1);
+		for (int i = index; i >= 0; i--) {
+			Snapshot s = list.get(i);
+			if (s != null) {
+				return s.getAverageRisk(v.getPhenotype());
+			}
+		}
+		return Double.NaN;
+	}
+
+	// immune histories of one deme at one time, with the number of hosts holding each
+	// holds the nodes themselves, whose ids stay valid after the nodes leave their tree
+	private static class Snapshot {
+
+		private ImmuneHistory[] histories;
+		private double[][] bounds;			// taken while the deme is not stepping, as nodes make them lazily
+		private int[] hosts;
+		private double total = 0.0;
+
+		Snapshot(HostPopulation hp) {
+			ImmuneHistory root = hp.getHistoryRoot();
+			int n = root.getLiveCount();
+			if (n <= Parameters.fitnessSampleSize) {
+				histories = new ImmuneHistory[n];
+				hosts = new int[n];
+				for (int i = 0; i < n; i++) {
+					histories[i] = root.getLive(i);
+					hosts[i] = histories[i].getHosts();
+					total += hosts[i];
+				}
+			} else {
+				n = Parameters.fitnessSampleSize;
+				histories = new ImmuneHistory[n];
+				hosts = new int[n];
+				for (int i = 0; i < n; i++) {
+					histories[i] = hp.getRandomImmuneHistory();
+					hosts[i] = 1;
+					total += 1;
+				}
+			}
+			bounds = new double[n][];
+			for (int i = 0; i < n; i++) {
+				bounds[i] = histories[i].getBounds();
+			}
+		}
+
+		// reads only the packed ids and bounds of each history, so is safe to call from several threads
+		double getAverageRisk(Phenotype p) {
+			double risk = 0.0;
+			for (int i = 0; i < histories.length; i++) {
+				risk += hosts[i] * PhenotypeTable.riskOfInfection(p, histories[i].getIds(), bounds[i]);
+			}
+			return risk / total;
+		}
+
+	}
+
+}
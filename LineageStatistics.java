@@ -0,0 +1,82 @@
+/* Running sums over sampled pairs of infections, giving diversity, tmrca, Ne*tau, serial interval and antigenic diversity */
+/* Each pair costs one common ancestor query, shared by its distance and its coalescence */
+/* Sums of several samples combine by weight, so the global values can be served from the samples drawn within each deme */
+/* Used by Simulation and HostPopulation, each holding its own sums, only touched by the thread updating them */
+
+public class LineageStatistics {
+
+	// fields
+	private int pairs;
+	private double distance;
+	private double maxDistance;
+	private double antigenicDistance;
+	private double coalescences;
+	private double opportunities;					// coalWindow summed once per pair
+	private double serialInterval;
+
+	// methods
+
+	// forget every pair, ready for the next print
+	public void clear() {
+		pairs = 0;
+		distance = 0.0;
+		maxDistance = 0.0;
+		antigenicDistance = 0.0;
+		coalescences = 0.0;
+		opportunities = 0.0;
+		serialInterval = 0.0;
+	}
+
+	// add the pair vA, vB, the serial interval is taken from vA alone
+	public void add(Virus vA, Virus vB) {
+		double coalWindow = Parameters.netauWindow / 365.0;
+		int ancestor = Genealogy.commonAncestor(vA.getNode(), vB.getNode());
+		double dist = vA.distance(vB, ancestor);
+		distance += dist;
+		if (dist > maxDistance) {
+			maxDistance = dist;
+		}
+		antigenicDistance += vA.antigenicDistance(vB);
+		opportunities += coalWindow;
+		coalescences += vA.coalescence(vB, coalWindow, ancestor);
+		serialInterval += vA.serialInterval();
+		pairs++;
+	}
+
+	public int getPairs() {
+		return pairs;
+	}
+
+	// mean distance in years between the pairs, 0 with no pairs
+	public double getDiversity() {
+		return mean(distance);
+	}
+
+	// half the longest distance seen
+	public double getTmrca() {
+		return maxDistance / 2.0;
+	}
+
+	// netauWindow over the proportion of pairs coalescing within it
+	public double getNetau() {
+		return opportunities / coalescences;
+	}
+
+	public double getSerialInterval() {
+		return mean(serialInterval);
+	}
+
+	public double getAntigenicDiversity() {
+		return mean(antigenicDistance);
+	}
+
+	// proportion of pairs coalescing within netauWindow
+	public double getCoalescence() {
+		return mean(coalescences);
+	}
+
+	private double mean(double sum) {
+		return (pairs > 0) ? sum / pairs : 0.0;
+	}
+
+}
@@ -0,0 +1,254 @@
+/* Exact stochastic simulation of all demes with the next reaction method of Gibson and Bruck (2000) */
+/* Every deme has a fixed set of event channels, each with a putative firing time held in an indexed priority queue */
+/* Firing a channel only redraws its own time, channels whose rates it changed are rescaled rather than redrawn */
+/* Rates are treated as constant between events except for seasonality, which is refreshed every deltaT */
+/* Between-deme imports have one channel per edge of the deme network, after the channels of every deme */
+
+import java.util.*;
+
+public class NextReactionEngine {
+
+	// event channels within a deme
+	private static final int CONTACT = 0;
+	private static final int RECOVERY = 1;
+	private static final int MUTATION = 2;
+	private static final int SAMPLING = 3;
+	private static final int TURNOVER_S = 4;		// swap or death, depending on swapDemography
+	private static final int TURNOVER_I = 5;
+	private static final int TURNOVER_R = 6;
+	private static final int BIRTH = 7;
+	private static final int IMMUNITY_LOSS = 8;
+	private static final int WANING = 9;
+	private static final int CHANNELS = 10;
+
+	// fields
+	private List<HostPopulation> demes;
+	private DemeNetwork network;
+	private int imports;					// first import channel, channel imports + e carries edge e
+	private double[] rates;					// current rate of every channel
+	private IndexedPriorityQueue queue;		// putative firing time of every channel
+	private boolean[] touched;				// per deme, whether an event fell in it since the last clearTouched
+	private int[] touchedDemes;
+	private int touchedCount = 0;
+
+	// constructor
+	public NextReactionEngine(List<HostPopulation> demes) {
+		this.demes = demes;
+		network = Parameters.getDemeNetwork();
+		imports = CHANNELS * demes.size();
+		rates = new double[imports + network.getEdgeCount()];
+		queue = new IndexedPriorityQueue(rates.length);
+		touched = new boolean[demes.size()];
+		touchedDemes = new int[demes.size()];
+	}
+
+	// methods
+
+	// fire every event before end in time order, leaving the day at end
+	public void advance(double end) {
+
+		// seasonality has moved since the last call, so refresh every rate
+		double now = Parameters.day;
+		for (int c = 0; c < rates.length; c++) {
+			refresh(c, now);
+		}
+
+		while (queue.peekKey() < end) {
+			int c = queue.peek();
+			now = queue.peekKey();
+			Parameters.day = now;
+			int d = deme(c);
+			fire(c);
+			if (!touched[d]) {
+				touched[d] = true;
+				touchedDemes[touchedCount] = d;
+				touchedCount++;
+			}
+
+			// the fired channel draws a fresh time, everything sharing its deme is rescaled
+			rates[c] = 0.0;
+			refresh(c, now);
+			for (int k = 0; k < CHANNELS; k++) {
+				int other = d * CHANNELS + k;
+				if (other != c) {
+					refresh(other, now);
+				}
+			}
+			for (int e = network.getInStart(d); e < network.getInStart(d + 1); e++) {
+				if (imports + e != c) {
+					refresh(imports + e, now);
+				}
+			}
+			// demes downstream import from this deme's infecteds
+			for (int k = network.getOutStart(d); k < network.getOutStart(d + 1); k++) {
+				refresh(imports + network.getOutEdge(k), now);
+			}
+		}
+
+		Parameters.day = end;
+
+	}
+
+	// forget every putative time, used when the simulation restarts
+	public void reset() {
+		for (int c = 0; c < rates.length; c++) {
+			rates[c] = 0.0;
+			queue.update(c, Double.POSITIVE_INFINITY);
+		}
+		clearTouched();
+	}
+
+	// demes that may have changed since the last clearTouched, in the order of their first event
+	public int getTouchedCount() {
+		return touchedCount;
+	}
+	public int getTouched(int i) {
+		return touchedDemes[i];
+	}
+	public void clearTouched() {
+		for (int i = 0; i < touchedCount; i++) {
+			touched[touchedDemes[i]] = false;
+		}
+		touchedCount = 0;
+	}
+
+	// recompute the rate of channel c at time now and move its putative time to match
+	// a channel that was already running keeps its time scaled by the ratio of old and new rates
+	// one that was idle draws a fresh exponential time from its deme's stream
+	private void refresh(int c, double now) {
+		HostPopulation hp = demes.get(deme(c));
+		double oldRate = rates[c];
+		double newRate = rate(hp, c);
+		rates[c] = newRate;
+		if (newRate <= 0.0) {
+			rates[c] = 0.0;
+			queue.update(c, Double.POSITIVE_INFINITY);
+		} else if (oldRate <= 0.0) {
+			queue.update(c, now + hp.getRandomStream().nextExponential(1.0 / newRate));
+		} else if (oldRate != newRate) {
+			queue.update(c, now + (oldRate / newRate) * (queue.getKey(c) - now));
+		}
+	}
+
+	// deme whose stream and hosts channel c acts on, the target deme for an import
+	private int deme(int c) {
+		if (c >= imports) {
+			return network.getTarget(c - imports);
+		}
+		return c / CHANNELS;
+	}
+
+	// per-day rate of channel c in deme hp, matching the expected counts of the timestep engines
+	private double rate(HostPopulation hp, int c) {
+		int deme = hp.getDeme();
+		if (c >= imports) {
+			int e = c - imports;
+			HostPopulation hpSource = demes.get(network.getSource(e));
+			return hpSource.getContactI() * hp.getPrS() * Parameters.beta * Parameters.betweenDemePro * network.getWeight(e) * Parameters.getSeasonality(deme);
+		}
+		switch (c % CHANNELS) {
+			case CONTACT:
+				return hp.getI() * hp.getPrS() * Parameters.beta * Parameters.getSeasonality(deme);
+			case RECOVERY:
+				return hp.getI() * Parameters.nu;
+			case MUTATION:
+				return hp.getI() * Parameters.muPhenotype;
+			case SAMPLING:
+				if (hp.getI() == 0 || Parameters.day < Parameters.burnin) {
+					return 0.0;
+				}
+				if (Parameters.tipSamplingProportional) {
+					return hp.getI() * Parameters.tipSamplingRate;
+				}
+				return Parameters.tipSamplingRate;
+			case TURNOVER_S:
+				return hp.getS() * turnoverRate();
+			case TURNOVER_I:
+				return hp.getI() * turnoverRate();
+			case TURNOVER_R:
+				return hp.getR() * turnoverRate();
+			case BIRTH:
+				if (Parameters.swapDemography) {
+					return 0.0;
+				}
+				return hp.getN() * Parameters.birthRate;
+			case IMMUNITY_LOSS:
+				if (!Parameters.transcendental) {
+					return 0.0;
+				}
+				return hp.getR() * Parameters.immunityLoss;
+			case WANING:
+				if (!Parameters.waning) {
+					return 0.0;
+				}
+				return hp.getN() * Parameters.waningRate;
+			default:
+				return 0.0;
+		}
+	}
+
+	// per-host rate at which hosts are swapped out or die
+	private double turnoverRate() {
+		if (Parameters.swapDemography) {
+			return Parameters.birthRate;
+		}
+		return Parameters.deathRate;
+	}
+
+	// carry out a single event of channel c, drawing from the stream of its deme
+	private void fire(int c) {
+		HostPopulation hp = demes.get(deme(c));
+		RandomStream previous = Random.use(hp.getRandomStream());
+		if (c >= imports) {
+			hp.importContact(demes.get(network.getSource(c - imports)));
+			Random.use(previous);
+			return;
+		}
+		switch (c % CHANNELS) {
+			case CONTACT:
+				hp.contact();
+				break;
+			case RECOVERY:
+				hp.recovery();
+				break;
+			case MUTATION:
+				hp.mutation();
+				break;
+			case SAMPLING:
+				hp.sampling();
+				break;
+			case TURNOVER_S:
+				if (Parameters.swapDemography) {
+					hp.swapS();
+				} else {
+					hp.deathS();
+				}
+				break;
+			case TURNOVER_I:
+				if (Parameters.swapDemography) {
+					hp.swapI();
+				} else {
+					hp.deathI();
+				}
+				break;
+			case TURNOVER_R:
+				if (Parameters.swapDemography) {
+					hp.swapR();
+				} else {
+					hp.deathR();
+				}
+				break;
+			case BIRTH:
+				hp.birth();
+				break;
+			case IMMUNITY_LOSS:
+				hp.immunityLoss();
+				break;
+			case WANING:
+				hp.waning();
+				break;
+		}
+		Random.use(previous);
+	}
+
+}
@@ -0,0 +1,126 @@
+/* Hosts stored as one Host object each, in a list per compartment */
+
+import java.util.*;
+
+public class ObjectHostStore implements HostStore {
+
+	// fields
+	private List<List<Host>> compartments = new ArrayList<>();
+	private ImmuneHistory root = new ImmuneHistory();		// histories of this store's hosts are interned here
+
+	// constructor
+	public ObjectHostStore() {
+		for (int c = 0; c < 3; c++) {
+			compartments.add(new ArrayList<>());
+		}
+	}
+
+	// methods
+
+	public int size(int c) {
+		return compartments.get(c).size();
+	}
+
+	public void addNaive(int c) {
+		Host h = new Host(root);
+		compartments.get(c).add(h);
+	}
+
+	public void addInfected(Virus v) {
+		Host h = new Host(v, root);
+		compartments.get(INFECTED).add(h);
+	}
+
+	public void add(int c, Host h) {
+		h.internHistory(root);
+		compartments.get(c).add(h);
+	}
+
+	public void remove(int c, int i) {
+		Host h = take(c, i);
+		h.releaseHistory();
+	}
+
+	public void move(int from, int i, int to) {
+		Host h = take(from, i);
+		compartments.get(to).add(h);
+	}
+
+	public void reset(int c, int i) {
+		Host h = compartments.get(c).get(i);
+		h.reset();
+	}
+
+	public Virus getInfection(int i) {
+		Host h = compartments.get(INFECTED).get(i);
+		return h.getInfection();
+	}
+
+	public int getInfectionNode(int i) {
+		return getInfection(i).getNode();
+	}
+
+	public void infect(int i, int parent, int deme) {
+		Host h = compartments.get(SUSCEPTIBLE).get(i);
+		h.infect(Virus.of(parent), deme);
+		move(SUSCEPTIBLE, i, INFECTED);
+	}
+
+	public Virus mutate(int i) {
+		Host h = compartments.get(INFECTED).get(i);
+		return h.mutate();
+	}
+
+	public void recover(int i, int to) {
+		Host h = compartments.get(INFECTED).get(i);
+		h.clearInfection();
+		move(INFECTED, i, to);
+	}
+
+	public double riskOfInfection(Phenotype p, int c, int i) {
+		Host h = compartments.get(c).get(i);
+		return h.getImmuneHistory().riskOfInfection(p);
+	}
+
+	public int getHistoryLength(int c, int i) {
+		Host h = compartments.get(c).get(i);
+		return h.getHistoryLength();
+	}
+
+	public void waneImmunity(int c, int i) {
+		Host h = compartments.get(c).get(i);
+		h.waneImmunity();
+	}
+
+	public ImmuneHistory getImmuneHistory(int c, int i) {
+		Host h = compartments.get(c).get(i);
+		return h.getImmuneHistory();
+	}
+
+	public ImmuneHistory getHistoryRoot() {
+		return root;
+	}
+
+	public Host getHost(int c, int i) {
+		return compartments.get(c).get(i);
+	}
+
+	public void clear() {
+		for (List<Host> hosts : compartments) {
+			hosts.clear();
+		}
+		root = new ImmuneHistory();
+	}
+
+	// remove host i of compartment c by moving the last host into its place
+	private Host take(int c, int i) {
+		List<Host> hosts = compartments.get(c);
+		int lastIndex = hosts.size() - 1;
+		Host h = hosts.get(i);
+		Host lastHost = hosts.get(lastIndex);
+		hosts.set(i, lastHost);
+		hosts.remove(lastIndex);
+		return h;
+	}
+
+}
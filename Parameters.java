@@ -8,6 +8,7 @@ import java.io.*;
 public class Parameters {
 	// global parameters
 	public static double day = 0;
+	public static double stepSize = 0.1; // length of the current timestep in days, always deltaT unless the engine is adaptive
 	public static Virus urVirus = null;
 	public static Phenotype urImmunity = null;
 
@@ -15,14 +16,21 @@ public class Parameters {
 	public static int burnin = 0; // days to wait before logging output
 	public static int endDay = 5000; // number of days to simulate
 	public static double deltaT = 0.1; // number of days to move forward in a single timestep
+	public static String engine = "fixed"; // options include: "fixed", "adaptive", "exact"
+	public static double tauEpsilon = 0.03; // adaptive engine: bound on the relative change in S and I over one timestep
+	public static double minDeltaT = 0.01; // adaptive engine: shortest timestep in days, taken even if a deme allows less
+	public static double maxDeltaT = 1.0; // adaptive engine: longest timestep in days
 	public static int printStep = 10; // print to out.timeseries every week
 	public static double tipSamplingRate = 0.0002; // in samples per deme per day
 	public static int tipSamplesPerDeme = 1000;
 	public static boolean tipSamplingProportional = true; // whether to sample proportional to prevalance
 	public static double treeProportion = 0.1; // proportion of tips to use in tree reconstruction
+	public static int pruneInterval = 10; // days between sweeps of the genealogy freeing extinct lineages, 0 to keep every virus
+	public static boolean collapseLineages = false; // whether sweeps also drop ancestors that only continue a single lineage
 	public static int diversitySamplingCount = 1000; // how many samples to draw to calculate diversity, Ne*tau, serial
 														// interval
 	public static int netauWindow = 100; // window in days to calculate Ne*tau
+	public static boolean pooledDiversity = false; // whether global diversity, netau and serial interval are pooled from the pairs sampled within demes, see Simulation.poolDiversity
 	public static boolean repeatSim = true; // repeat simulation until endDay is reached?
 	public static boolean immunityReconstruction = false; // whether to print immunity reconstruction to out.immunity
 	public static boolean memoryProfiling = false; // requires -javaagent:classmexer.jar to run
@@ -36,6 +44,15 @@ public class Parameters {
 	public static String outPrefix = "run-"; // suffix for output files.
 	public static String inPath = "input/"; // path to dump output files.
 	public static int fitnessSampleSize = 10000; // number of random hosts to sample for average infection risk
+	public static boolean immunitySummary = false; // compute average infection risk from the distinct immune histories of a deme, exactly when there are no more than fitnessSampleSize of them, otherwise from fitnessSampleSize of them drawn by hosts
+	public static boolean lazyFitness = false; // defer virus fitness to immunity snapshots taken every printStep, computed only for viruses in the output
+	public static boolean riskLandscape = false; // interpolate virus fitness from a per-deme raster of average risks, see RiskLandscape
+	public static double landscapeCell = 0.5; // distance in antigenic units between points of the risk raster
+	public static double landscapeInterval = 1.0; // days before a point of the risk raster is evaluated again
+	public static boolean parallelDemes = false; // whether to step demes concurrently on a fork-join pool
+	public static int threadCount = 0; // worker threads used when parallelDemes, 0 uses all available cores
+	public static long seed = 0; // seed for the random number generator, 0 draws a fresh seed
+	public static String hostStore = "objects"; // options include: "objects", "arrays", "classes"
 
 	// metapopulation parameters
 	public static int demeCount = 3;
@@ -52,8 +69,15 @@ public class Parameters {
 	public static int initialDeme = 2; // index of deme where infection starts, 1..n
 	public static double initialPrR = 0.5; // as proportion of population
 	public static double beta = 0.36; // 0.3 // in contacts per individual per day
+	public static boolean batchContacts = false; // draw all of a step's contacts first, then evaluate their risks in one pass and apply the infections
 	public static double nu = 0.2; // 0.2 // in recoveries per individual per day
+	public static boolean scheduledRecovery = false; // give each infection a recovery day when it starts, rather than recovering random infecteds, timestep engines only
+	public static String infectiousPeriod = "exponential"; // distribution of scheduled infectious periods, "exponential", "erlang" or "fixed", each with mean 1/nu
+	public static int infectiousPeriodShape = 4; // shape of erlang infectious periods
 	public static double betweenDemePro = 0.0005; // relative to within-deme beta
+	public static boolean aggregateImports = false; // draw all imports into a deme at once and pick each source from an alias table, rather than one draw per edge
+	public static String demeNetworkFile = null; // csv of source,target,weight edges in inPath, null joins every pair of demes with weight 1
+	private static DemeNetwork demeNetwork = null;
 
 	// transcendental immunity
 	public static boolean transcendental = false; // whether to include a general recovered class
@@ -66,11 +90,14 @@ public class Parameters {
 	public static double[] demeOffsets = { 0, 0, 0.5 }; // relative to the year
 
 	// phenotype parameters
-	public static String phenotypeSpace = "geometric"; // options include: "geometric", "geometric3d", "geometric10d"
+	public static String phenotypeSpace = "geometric"; // options include: "geometric", "geometric3d", "geometric10d", "geometricND"
+	public static int phenotypeDimensions = 2; // dimensions of the "geometricND" space
 	public static double muPhenotype = 0.005; // in mutations per individual per day
 	public static boolean waning = false; // whether to allow waning of host immunity
 	public static double waningRate = 0.01; // rate per day of a host removing a random phenotype from their immune
 											// history
+	public static double historyMergeDistance = 0.0; // a recovered phenotype replaces a history entry closer than this, 0 keeps every entry
+	public static int historyMaxLength = 0; // oldest entries are dropped from longer histories, 0 for no limit
 
 	// parameters specific to GeometricPhenotype
 	public static double smithConversion = 0.1; // multiplier to distance to give cross-immunity
@@ -127,10 +154,22 @@ public class Parameters {
 		return baseline + amplitude * Math.cos(2 * Math.PI * getDate() + 2 * Math.PI * offset);
 	}
 
+	// network carrying between-deme contacts, every pair of demes unless read from demeNetworkFile
+	public static DemeNetwork getDemeNetwork() {
+		if (demeNetwork == null || demeNetwork.getDemeCount() != demeCount) {
+			demeNetwork = new DemeNetwork(demeCount);
+		}
+		return demeNetwork;
+	}
+
 	// initialize
 	public static void initialize() {
 		urVirus = new Virus();
 		urImmunity = PhenotypeFactory.makeHostPhenotype();
+		// draw site mutation vectors from the root stream now, rather than from whichever deme first mutates
+		if (phenotypeSpace.equals(PhenotypeFactory.GEOMETRIC_SEQ)) {
+			Biology.SiteMutationVectors.VECTORS.getMatrices();
+		}
 	}
 
 	// load parameters.yml
@@ -160,6 +199,22 @@ public class Parameters {
 			if (map.get("deltaT") != null) {
 				deltaT = (double) map.get("deltaT");
 			}
+			if (map.get("engine") != null) {
+				engine = (String) map.get("engine");
+				if (!engine.equals("fixed") && !engine.equals("adaptive") && !engine.equals("exact")) {
+					System.out.println("Unknown engine " + engine);
+					System.exit(1);
+				}
+			}
+			if (map.get("tauEpsilon") != null) {
+				tauEpsilon = (double) map.get("tauEpsilon");
+			}
+			if (map.get("minDeltaT") != null) {
+				minDeltaT = (double) map.get("minDeltaT");
+			}
+			if (map.get("maxDeltaT") != null) {
+				maxDeltaT = (double) map.get("maxDeltaT");
+			}
 			if (map.get("printStep") != null) {
 				printStep = (int) map.get("printStep");
 			}
@@ -175,12 +230,21 @@ public class Parameters {
 			if (map.get("treeProportion") != null) {
 				treeProportion = (double) map.get("treeProportion");
 			}
+			if (map.get("pruneInterval") != null) {
+				pruneInterval = (int) map.get("pruneInterval");
+			}
+			if (map.get("collapseLineages") != null) {
+				collapseLineages = (boolean) map.get("collapseLineages");
+			}
 			if (map.get("diversitySamplingCount") != null) {
 				diversitySamplingCount = (int) map.get("diversitySamplingCount");
 			}
 			if (map.get("netauWindow") != null) {
 				netauWindow = (int) map.get("netauWindow");
 			}
+			if (map.get("pooledDiversity") != null) {
+				pooledDiversity = (boolean) map.get("pooledDiversity");
+			}
 			if (map.get("repeatSim") != null) {
 				repeatSim = (boolean) map.get("repeatSim");
 			}
@@ -205,6 +269,18 @@ public class Parameters {
 			if (map.get("restartFromCheckpoint") != null) {
 				restartFromCheckpoint = (boolean) map.get("restartFromCheckpoint");
 			}
+			if (map.get("parallelDemes") != null) {
+				parallelDemes = (boolean) map.get("parallelDemes");
+			}
+			if (map.get("threadCount") != null) {
+				threadCount = (int) map.get("threadCount");
+			}
+			if (map.get("seed") != null) {
+				seed = ((Number) map.get("seed")).longValue();
+			}
+			if (map.get("hostStore") != null) {
+				hostStore = (String) map.get("hostStore");
+			}
 			if (map.get("demeCount") != null) {
 				demeCount = (int) map.get("demeCount");
 			}
@@ -235,12 +311,37 @@ public class Parameters {
 			if (map.get("beta") != null) {
 				beta = (double) map.get("beta");
 			}
+			if (map.get("batchContacts") != null) {
+				batchContacts = (boolean) map.get("batchContacts");
+			}
 			if (map.get("nu") != null) {
 				nu = (double) map.get("nu");
 			}
+			if (map.get("scheduledRecovery") != null) {
+				scheduledRecovery = (boolean) map.get("scheduledRecovery");
+			}
+			if (map.get("infectiousPeriod") != null) {
+				infectiousPeriod = (String) map.get("infectiousPeriod");
+			}
+			if (map.get("infectiousPeriodShape") != null) {
+				infectiousPeriodShape = (int) map.get("infectiousPeriodShape");
+			}
 			if (map.get("betweenDemePro") != null) {
 				betweenDemePro = (double) map.get("betweenDemePro");
 			}
+			if (map.get("aggregateImports") != null) {
+				aggregateImports = (boolean) map.get("aggregateImports");
+			}
+			if (map.get("demeNetworkFile") != null) {
+				demeNetworkFile = (String) map.get("demeNetworkFile");
+				// a network that cannot be read stops the run, rather than falling back to the complete graph
+				try {
+					demeNetwork = DemeNetwork.read(inPath + demeNetworkFile, demeCount);
+				} catch (IOException e) {
+					System.out.println("Cannot read deme network " + inPath + demeNetworkFile);
+					System.exit(1);
+				}
+			}
 			if (map.get("transcendental") != null) {
 				transcendental = (boolean) map.get("transcendental");
 			}
@@ -262,6 +363,9 @@ public class Parameters {
 			if (map.get("phenotypeSpace") != null) {
 				phenotypeSpace = (String) map.get("phenotypeSpace");
 			}
+			if (map.get("phenotypeDimensions") != null) {
+				phenotypeDimensions = (int) map.get("phenotypeDimensions");
+			}
 			if (map.get("muPhenotype") != null) {
 				muPhenotype = (double) map.get("muPhenotype");
 			}
@@ -271,6 +375,12 @@ public class Parameters {
 			if (map.get("waningRate") != null) {
 				waningRate = (double) map.get("waningRate");
 			}
+			if (map.get("historyMergeDistance") != null) {
+				historyMergeDistance = (double) map.get("historyMergeDistance");
+			}
+			if (map.get("historyMaxLength") != null) {
+				historyMaxLength = (int) map.get("historyMaxLength");
+			}
 			if (map.get("smithConversion") != null) {
 				smithConversion = (double) map.get("smithConversion");
 			}
@@ -404,6 +514,21 @@ public class Parameters {
 			if (map.get("fitnessSampleSize") != null) {
 				fitnessSampleSize = (int) map.get("fitnessSampleSize");
 			}
+			if (map.get("immunitySummary") != null) {
+				immunitySummary = (boolean) map.get("immunitySummary");
+			}
+			if (map.get("lazyFitness") != null) {
+				lazyFitness = (boolean) map.get("lazyFitness");
+			}
+			if (map.get("riskLandscape") != null) {
+				riskLandscape = (boolean) map.get("riskLandscape");
+			}
+			if (map.get("landscapeCell") != null) {
+				landscapeCell = (double) map.get("landscapeCell");
+			}
+			if (map.get("landscapeInterval") != null) {
+				landscapeInterval = (double) map.get("landscapeInterval");
+			}
 			if (map.get("sampleHostImmunity") != null) {
 				sampleHostImmunity = (boolean) map.get("sampleHostImmunity");
 			}
@@ -6,6 +6,16 @@ public interface Phenotype {
 	// when contacting a Host with a List of Phenotypes forming their immune history
 	double riskOfInfection( Phenotype[] immuneHistory);
 
+	// number of antigenic coordinates and the value of coordinate i, as packed in PhenotypeTable
+	int dimensions();
+	double getTrait(int i);
+
+	// move coordinate i to t, only for transforming output once the simulation is over, see VirusTree.rotate
+	void setTrait(double t, int i);
+
+	// id of the phenotype's coordinates in PhenotypeTable
+	int getId();
+
 	// return mutated Phenotype object
 	// returned Phenotype is a newly constructed copy of original
 	Phenotype mutate();
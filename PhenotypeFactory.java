@@ -6,6 +6,7 @@ public class PhenotypeFactory {
 	public static String GEOMETRIC = "geometric";
 	public static String GEOMETRIC3D = "geometric3d";
 	public static String GEOMETRIC10D = "geometric10d";
+	public static String GEOMETRIC_ND = "geometricND";
 	public static String SEQUENCE = "sequence";
 	public static String GEOMETRIC_SEQ = "geometricSeq";
 
@@ -13,9 +14,7 @@ public class PhenotypeFactory {
 	public static Phenotype makeVirusPhenotype() {
 
 		Phenotype p = null;
-		if (GEOMETRIC.equals(Parameters.phenotypeSpace)) { p = new GeometricPhenotype(); }
-		if (GEOMETRIC3D.equals(Parameters.phenotypeSpace)) { p = new GeometricPhenotype3D(); }
-		if (GEOMETRIC10D.equals(Parameters.phenotypeSpace)) { p = new GeometricPhenotype10D(); }
+		if (isGeometric()) { p = new GeometricPhenotypeND(new double[dimensions()]); }
 		if (GEOMETRIC_SEQ.equals(Parameters.phenotypeSpace)) { p = new GeometricSeqPhenotype(); }
 		return p;
 
@@ -25,15 +24,10 @@ public class PhenotypeFactory {
 	public static Phenotype makeHostPhenotype() {
 
 		Phenotype p = null;
-		if (GEOMETRIC.equals(Parameters.phenotypeSpace)) {
-			p = new GeometricPhenotype(Parameters.initialTraitA, 0);
-		}
-		if (GEOMETRIC3D.equals(Parameters.phenotypeSpace)) {
-			p = new GeometricPhenotype3D(Parameters.initialTraitA, 0, 0);
-		}
-		if (GEOMETRIC10D.equals(Parameters.phenotypeSpace)) {
-			double[] traits = {Parameters.initialTraitA, 0, 0, 0, 0, 0, 0, 0, 0, 0};
-			p = new GeometricPhenotype10D(traits);
+		if (isGeometric()) {
+			double[] traits = new double[dimensions()];
+			traits[0] = Parameters.initialTraitA;
+			p = new GeometricPhenotypeND(traits);
 		}
 		if (GEOMETRIC_SEQ.equals(Parameters.phenotypeSpace)) {
 			String startingSequence = Parameters.startingSequence;
@@ -51,10 +45,28 @@ public class PhenotypeFactory {
 	public static Phenotype makeArbitaryPhenotype(double x, double y) {
 
 		Phenotype p = null;
-		if (GEOMETRIC.equals(Parameters.phenotypeSpace)) { p = new GeometricPhenotype(x, y); }
 		if (GEOMETRIC_SEQ.equals(Parameters.phenotypeSpace)) { p = new GeometricSeqPhenotype(x, y); }
+		if (isGeometric()) {
+			double[] traits = new double[dimensions()];		// in the plane of the first two coordinates
+			traits[0] = x;
+			traits[1] = y;
+			p = new GeometricPhenotypeND(traits);
+		}
 		return p;
 
 	}
 
-}
\ No newline at end of file
+	// the geometric spaces are all GeometricPhenotypeND, differing only in dimensions and in how they mutate
+	private static boolean isGeometric() {
+		return GEOMETRIC.equals(Parameters.phenotypeSpace) || GEOMETRIC3D.equals(Parameters.phenotypeSpace)
+			|| GEOMETRIC10D.equals(Parameters.phenotypeSpace) || GEOMETRIC_ND.equals(Parameters.phenotypeSpace);
+	}
+
+	private static int dimensions() {
+		if (GEOMETRIC.equals(Parameters.phenotypeSpace)) { return 2; }
+		if (GEOMETRIC3D.equals(Parameters.phenotypeSpace)) { return 3; }
+		if (GEOMETRIC10D.equals(Parameters.phenotypeSpace)) { return 10; }
+		return Parameters.phenotypeDimensions;
+	}
+
+}
@@ -0,0 +1,229 @@
+/* Registry of phenotypes as int ids, with their coordinates packed into shared arrays of doubles */
+/* Immune histories hold ids, so risk of infection is a loop over packed coordinates rather than over Phenotype objects */
+/* Phenotypes add their coordinates when they are made and must not change them afterwards */
+/* Completely static class, allows no instances to be instantiated */
+/* Adding is synchronized, coordinates live in fixed-size chunks that never move so reads need no lock */
+/* Each chunk holds phenotypes of a single number of dimensions, so spaces of different dimensions can share the table */
+/* Ids are handed out in order of creation and never reused, so the same run makes the same ids whenever the garbage */
+/* collector runs, and a chunk is dropped once every id it handed out has been released */
+/* Demes stepped in parallel make phenotypes in an interleaved order, so ids must still never name phenotypes in output */
+
+import java.util.*;
+
+public class PhenotypeTable {
+
+	private static final int CHUNK_SHIFT = 12;					// 4096 phenotypes per chunk
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+	private static final int MAX_CHUNKS = 1 << (31 - CHUNK_SHIFT);
+	private static final double NEAR_SQUARED = 1.000001e-4;	// above every squared distance whose root is under 0.01
+
+	// fields
+	private static volatile double[][] chunks = new double[16][];	// a chunk of n dimensions holds n coordinates per phenotype
+	private static int chunkCount = 0;						// chunks made, including dropped ones
+	private static int[] chunkLive = new int[16];			// ids of each chunk handed out and not yet released
+	private static int[] filling = new int[0];				// by dimensions: chunk handing out new ids, -1 if none
+	private static int[] filled = new int[0];				// by dimensions: ids handed out of that chunk
+	private static int count = 0;							// ids handed out and not yet released
+
+	// methods
+
+	// id of phenotype p
+	public static int idOf(Phenotype p) {
+		return p.getId();
+	}
+
+	public static synchronized int size() {
+		return count;
+	}
+
+	// number of coordinates of the phenotype with this id
+	public static int getDimensions(int id) {
+		return chunks[id >>> CHUNK_SHIFT].length >>> CHUNK_SHIFT;
+	}
+
+	// coordinate i of the phenotype with this id
+	public static double getTrait(int id, int i) {
+		double[] chunk = chunks[id >>> CHUNK_SHIFT];
+		return chunk[(id & CHUNK_MASK) * (chunk.length >>> CHUNK_SHIFT) + i];
+	}
+
+	// change coordinate i of the phenotype with this id, only for transforming output once risks are no longer evaluated,
+	// as immune histories keep bounds and risks computed from the old coordinates
+	public static void setTrait(int id, int i, double t) {
+		double[] chunk = chunks[id >>> CHUNK_SHIFT];
+		chunk[(id & CHUNK_MASK) * (chunk.length >>> CHUNK_SHIFT) + i] = t;
+	}
+
+	// Euclidean distance between the phenotypes with these ids, which must have the same dimensions
+	public static double distance(int a, int b) {
+		double[][] table = chunks;
+		double[] aChunk = table[a >>> CHUNK_SHIFT];
+		int dimensions = aChunk.length >>> CHUNK_SHIFT;
+		int aOffset = (a & CHUNK_MASK) * dimensions;
+		double[] bChunk = table[b >>> CHUNK_SHIFT];
+		int bOffset = (b & CHUNK_MASK) * dimensions;
+		double squared = 0.0;
+		for (int i = 0; i < dimensions; i++) {
+			double d = aChunk[aOffset + i] - bChunk[bOffset + i];
+			squared += d * d;
+		}
+		return Math.sqrt(squared);
+	}
+
+	// id for a phenotype with these coordinates
+	// the id is published by writing chunks last, so a thread that sees it also sees the coordinates
+	public static synchronized int add(double[] traits) {
+		int id = nextId(traits.length);
+		double[][] table = chunks;
+		int offset = (id & CHUNK_MASK) * traits.length;
+		System.arraycopy(traits, 0, table[id >>> CHUNK_SHIFT], offset, traits.length);
+		chunks = table;
+		return id;
+	}
+
+	// hand back an id from add, once nothing can reach it any more
+	public static synchronized void release(int id) {
+		int chunk = id >>> CHUNK_SHIFT;
+		chunkLive[chunk]--;
+		count--;
+		if (chunkLive[chunk] == 0 && filling[getDimensions(id)] != chunk) {
+			chunks[chunk] = null;
+		}
+	}
+
+	// risk of infection of a virus with phenotype p against a history of ids of the same dimensions
+	// matches riskOfInfection of the geometric phenotypes, all of which take risk from the closest phenotype in history
+	public static double riskOfInfection(Phenotype p, int[] history) {
+		return riskOfInfection(p, history, null);
+	}
+
+	// the same, given bounds of history from boundsOf, or null
+	public static double riskOfInfection(Phenotype p, int[] history, double[] bounds) {
+		return risk(chunks, p.getId(), history, bounds);
+	}
+
+	// risks of infection of n contacts, contact k being between the phenotype with id viruses[k] and the history histories[k]
+	// with bounds[k] from boundsOf, or null
+	// gives the same risks as calling riskOfInfection once per contact, in a single pass over the packed coordinates
+	public static void riskOfInfection(int[] viruses, int[][] histories, double[][] bounds, int n, double[] risks) {
+		double[][] table = chunks;
+		for (int k = 0; k < n; k++) {
+			risks[k] = risk(table, viruses[k], histories[k], bounds[k]);
+		}
+	}
+
+	// smallest and largest coordinates over a history of ids, as the minima in each dimension followed by the maxima
+	// empty for an empty history, which has no dimensions to bound
+	public static double[] boundsOf(int[] history) {
+		if (history.length == 0) {
+			return new double[0];
+		}
+		double[][] table = chunks;
+		int dimensions = getDimensions(history[0]);
+		double[] bounds = new double[2 * dimensions];
+		Arrays.fill(bounds, 0, dimensions, Double.POSITIVE_INFINITY);
+		Arrays.fill(bounds, dimensions, 2 * dimensions, Double.NEGATIVE_INFINITY);
+		for (int id : history) {
+			double[] chunk = table[id >>> CHUNK_SHIFT];
+			int offset = (id & CHUNK_MASK) * dimensions;
+			for (int i = 0; i < dimensions; i++) {
+				bounds[i] = Math.min(bounds[i], chunk[offset + i]);
+				bounds[dimensions + i] = Math.max(bounds[dimensions + i], chunk[offset + i]);
+			}
+		}
+		return bounds;
+	}
+
+	// risk of infection of phenotype pid against history, found from squared distances
+	// returns exactly what taking the square root of every distance would, as square roots preserve order,
+	// but also stops once risk is at its floor, and skips the history when its bounds are far enough away for risk to be 1
+	private static double risk(double[][] table, int pid, int[] history, double[] bounds) {
+
+		double[] pChunk = table[pid >>> CHUNK_SHIFT];
+		int dimensions = pChunk.length >>> CHUNK_SHIFT;
+		int pOffset = (pid & CHUNK_MASK) * dimensions;
+		double minRisk = 1.0 - Parameters.homologousImmunity;
+
+		// rounding is monotone, so the distance to the box is never more than the distance computed to any point inside it
+		if (bounds != null && history.length > 0) {
+			double boxDistance = 0.0;
+			for (int i = 0; i < dimensions; i++) {
+				double x = pChunk[pOffset + i];
+				double d = Math.max(0.0, Math.max(bounds[i] - x, x - bounds[dimensions + i]));
+				boxDistance += d * d;
+			}
+			if (Math.sqrt(boxDistance) * Parameters.smithConversion >= 1.0) {
+				return 1.0;
+			}
+		}
+
+		// find closest phenotype in history
+		double closestSquared = 100.0 * 100.0;
+		for (int id : history) {
+			double[] hChunk = table[id >>> CHUNK_SHIFT];
+			int hOffset = (id & CHUNK_MASK) * dimensions;
+			double thisSquared = 0.0;
+			for (int i = 0; i < dimensions; i++) {
+				double d = pChunk[pOffset + i] - hChunk[hOffset + i];
+				thisSquared += d * d;
+			}
+			if (thisSquared < closestSquared) {
+				closestSquared = thisSquared;
+				if (Math.sqrt(thisSquared) * Parameters.smithConversion <= minRisk) {
+					break;
+				}
+			}
+			if (thisSquared < NEAR_SQUARED && Math.sqrt(thisSquared) < 0.01) {
+				break;
+			}
+		}
+
+		double risk = Math.sqrt(closestSquared) * Parameters.smithConversion;
+		risk = Math.max(minRisk, risk);
+		risk = Math.min(1.0, risk);
+		return risk;
+
+	}
+
+	// the next id of the chunk filling for this many dimensions, starting a new chunk when it is full
+	// callers publish the coordinates they write by writing chunks again
+	private static int nextId(int dimensions) {
+		if (dimensions >= filling.length) {
+			int grown = Math.max(dimensions + 1, 2 * filling.length);
+			int from = filling.length;
+			filling = Arrays.copyOf(filling, grown);
+			filled = Arrays.copyOf(filled, grown);
+			Arrays.fill(filling, from, grown, -1);
+		}
+		int chunk = filling[dimensions];
+		if (chunk < 0 || filled[dimensions] > CHUNK_MASK) {
+			if (chunk >= 0 && chunkLive[chunk] == 0) {
+				chunks[chunk] = null;
+			}
+			chunk = newChunk(dimensions);
+			filling[dimensions] = chunk;
+			filled[dimensions] = 0;
+		}
+		int id = (chunk << CHUNK_SHIFT) | filled[dimensions];
+		filled[dimensions]++;
+		chunkLive[chunk]++;
+		count++;
+		return id;
+	}
+
+	private static int newChunk(int dimensions) {
+		if (chunkCount == MAX_CHUNKS) {
+			throw new IllegalStateException("PhenotypeTable has handed out every id");
+		}
+		double[][] table = chunks;
+		if (chunkCount == table.length) {
+			table = Arrays.copyOf(table, 2 * chunkCount);
+			chunkLive = Arrays.copyOf(chunkLive, 2 * chunkCount);
+		}
+		table[chunkCount] = new double[(CHUNK_MASK + 1) * dimensions];
+		chunks = table;
+		chunkCount++;
+		return chunkCount - 1;
+	}
+
+}
@@ -1,53 +1,79 @@
 /* Holds random number genator necessities */
 /* Trying to encapsulate this, so the RNG particulars can be changed if necessary */
 /* Completely static class, allows no instances to be instantiated */
-
-import cern.jet.random.*;
+/* Draws come from the RandomStream bound to the calling thread, which is the root stream unless a deme has bound its own */
 
 public class Random {
 
+	// fields
+	private static RandomStream root = new RandomStream(System.nanoTime());
+	private static final ThreadLocal<RandomStream> current = new ThreadLocal<>();
+
+	// seed the root stream, all deme streams are split from this in a fixed order
+	public static void setSeed(long seed) {
+		root = new RandomStream(seed);
+		current.remove();
+	}
+
+	// returns a new independent stream split from the root stream
+	public static RandomStream split() {
+		return root.split();
+	}
+
+	// bind stream s to the calling thread, returning the previously bound stream so it can be restored
+	// passing null returns the thread to the root stream
+	public static RandomStream use(RandomStream s) {
+		RandomStream previous = current.get();
+		current.set(s);
+		return previous;
+	}
+
+	public static RandomStream stream() {
+		RandomStream s = current.get();
+		if (s == null) {
+			s = root;
+		}
+		return s;
+	}
+
 	// methods
 
 	public static int nextInt(int from, int to) {
-		return cern.jet.random.Uniform.staticNextIntFromTo(from, to);
+		return stream().nextInt(from, to);
 	}
 
 	public static double nextDouble() {
-		return cern.jet.random.Uniform.staticNextDouble();
+		return stream().nextDouble();
 	}
 
 	public static double nextDouble(double from, double to) {
-		return cern.jet.random.Uniform.staticNextDoubleFromTo(from, to);
+		return stream().nextDouble(from, to);
 	}
 
 	public static double nextNormal() {
-		return cern.jet.random.Normal.staticNextDouble(0.0, 1.0);
+		return stream().nextNormal();
 	}
 
 	public static double nextNormal(double mean, double sd) {
-		return cern.jet.random.Normal.staticNextDouble(mean, sd);
+		return stream().nextNormal(mean, sd);
 	}
 
 	// tuned with mean
 	public static double nextExponential(double lambda) {
-		return cern.jet.random.Exponential.staticNextDouble(1.0 / lambda);
+		return stream().nextExponential(lambda);
 	}
 
 	// tuned with alpha and beta, matching Mathematica's notation
 	public static double nextGamma(double alpha, double beta) {
-		return cern.jet.random.Gamma.staticNextDouble(alpha, 1 / beta);
+		return stream().nextGamma(alpha, beta);
 	}
 
 	public static int nextPoisson(double lambda) {
-		return cern.jet.random.Poisson.staticNextInt(lambda);
+		return stream().nextPoisson(lambda);
 	}
 
 	public static boolean nextBoolean(double p) {
-		boolean x = false;
-		if (nextDouble() < p) {
-			x = true;
-		}
-		return x;
+		return stream().nextBoolean(p);
 	}
 
-}
\ No newline at end of file
+}
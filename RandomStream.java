@@ -0,0 +1,111 @@
+/* A seedable, splittable stream of random numbers */
+/* Each deme draws from its own stream, so draws are uncontended and a run is reproducible from a single seed */
+/* Distributions are Colt's, driven by a SplittableRandom rather than Colt's shared generator */
+
+import java.util.SplittableRandom;
+
+import cern.jet.random.*;
+import cern.jet.random.engine.RandomEngine;
+
+public class RandomStream {
+
+	// fields
+	private SplittableRandom generator;
+	private Uniform uniform;
+	private Normal normal;
+	private Exponential exponential;
+	private Gamma gamma;
+	private Poisson poisson;
+
+	// constructor
+	public RandomStream(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	private RandomStream(SplittableRandom g) {
+		generator = g;
+		RandomEngine engine = new Engine(g);
+		uniform = new Uniform(engine);
+		normal = new Normal(0.0, 1.0, engine);
+		exponential = new Exponential(1.0, engine);
+		gamma = new Gamma(1.0, 1.0, engine);
+		poisson = new Poisson(1.0, engine);
+	}
+
+	// returns a new stream that is statistically independent of this one
+	// splitting in a fixed order gives the same set of streams from the same seed
+	public RandomStream split() {
+		return new RandomStream(generator.split());
+	}
+
+	// methods
+
+	public int nextInt(int from, int to) {
+		return uniform.nextIntFromTo(from, to);
+	}
+
+	public double nextDouble() {
+		return uniform.nextDouble();
+	}
+
+	public double nextDouble(double from, double to) {
+		return uniform.nextDoubleFromTo(from, to);
+	}
+
+	public double nextNormal() {
+		return normal.nextDouble(0.0, 1.0);
+	}
+
+	public double nextNormal(double mean, double sd) {
+		return normal.nextDouble(mean, sd);
+	}
+
+	// tuned with mean
+	public double nextExponential(double lambda) {
+		return exponential.nextDouble(1.0 / lambda);
+	}
+
+	// tuned with alpha and beta, matching Mathematica's notation
+	public double nextGamma(double alpha, double beta) {
+		return gamma.nextDouble(alpha, 1 / beta);
+	}
+
+	public int nextPoisson(double lambda) {
+		return poisson.nextInt(lambda);
+	}
+
+	public boolean nextBoolean(double p) {
+		return nextDouble() < p;
+	}
+
+	// adapts SplittableRandom to the engine interface expected by Colt distributions
+	private static class Engine extends RandomEngine {
+
+		private static final long serialVersionUID = 1L;
+
+		private SplittableRandom generator;
+
+		Engine(SplittableRandom g) {
+			generator = g;
+		}
+
+		public int nextInt() {
+			return generator.nextInt();
+		}
+
+		// Colt expects uniform draws on the open interval (0,1)
+		public double raw() {
+			double x = generator.nextDouble();
+			while (x == 0.0) {
+				x = generator.nextDouble();
+			}
+			return x;
+		}
+
+		public double nextDouble() {
+			return raw();
+		}
+
+	}
+
+}
@@ -0,0 +1,157 @@
+/* Recovery days of one deme's infecteds, held in a calendar queue of buckets one timestep wide */
+/* Mirrors the infected compartment of its HostStore, which is dense with the last host moved into a removed host's place, */
+/* so every addition and removal of an infected must be passed on in the same order */
+/* Each infected has a stable handle for as long as it stays infected, buckets hold handles tagged with a generation */
+/* so an infected that leaves early is dropped lazily, when its bucket is next drained */
+/* Buckets form a ring, entries due more than one lap ahead stay in their bucket until their lap comes round */
+
+import java.util.*;
+
+public class RecoveryCalendar {
+
+	// fields
+	private double width;							// days covered by one bucket
+	private long[][] buckets;						// generation << 32 | handle of each entry
+	private int[] bucketSize;
+	private long cursor;							// first bucket that may still hold entries due, as a slot counted from day 0
+
+	private int[] handleAt = new int[0];			// handle of infected i
+	private int size = 0;
+	private int[] indexOf = new int[0];				// infected index of each handle
+	private double[] due = new double[0];			// recovery day of each handle
+	private int[] generation = new int[0];			// bumped whenever a handle is freed, invalidating its entries
+	private int[] free = new int[0];
+	private int freeCount = 0;
+	private int handleCount = 0;
+	private int[] taken = new int[0];
+
+	// constructor
+
+	// width in days of each bucket, and the mean infectious period, which sets how many buckets make up the ring
+	public RecoveryCalendar(double width, double meanPeriod) {
+		this.width = width;
+		int n = Integer.highestOneBit((int) Math.min(1 << 20, Math.ceil(4.0 * meanPeriod / width)));
+		n = Math.max(64, 2 * n);
+		buckets = new long[n][];
+		bucketSize = new int[n];
+		cursor = slot(Parameters.day);
+	}
+
+	// methods
+
+	// number of infecteds mirrored
+	public int size() {
+		return size;
+	}
+
+	public int indexOf(int handle) {
+		return indexOf[handle];
+	}
+
+	// a host joins the end of the infected compartment, due to recover on day
+	public void add(double day) {
+		int h = newHandle();
+		if (size == handleAt.length) {
+			handleAt = Arrays.copyOf(handleAt, Math.max(16, 2 * size));
+		}
+		handleAt[size] = h;
+		indexOf[h] = size;
+		size++;
+		due[h] = day;
+		insert(h, Math.max(slot(day), cursor));
+	}
+
+	// infected i leaves, its recovery is cancelled and the last infected takes its place
+	public void remove(int i) {
+		int h = handleAt[i];
+		size--;
+		int moved = handleAt[size];
+		handleAt[i] = moved;
+		indexOf[moved] = i;
+		indexOf[h] = -1;
+		generation[h]++;
+		if (freeCount == free.length) {
+			free = Arrays.copyOf(free, Math.max(16, 2 * freeCount));
+		}
+		free[freeCount] = h;
+		freeCount++;
+	}
+
+	// handles of infecteds due to recover before end, in order of bucket, taking them out of the calendar
+	// the infecteds stay mirrored until each is passed to remove, and their handles stay valid until then
+	public int[] takeDue(double end) {
+		int count = 0;
+		int mask = buckets.length - 1;
+		long last = slot(end);
+		for (long s = cursor; s <= last && s < cursor + buckets.length; s++) {
+			int b = (int) (s & mask);
+			long[] bucket = buckets[b];
+			int n = bucketSize[b];
+			int k = 0;
+			while (k < n) {
+				long entry = bucket[k];
+				int h = (int) entry;
+				if ((int) (entry >>> 32) != generation[h]) {
+					n--;
+					bucket[k] = bucket[n];
+				} else if (due[h] < end && slot(due[h]) <= s) {
+					n--;
+					bucket[k] = bucket[n];
+					if (count == taken.length) {
+						taken = Arrays.copyOf(taken, Math.max(16, 2 * count));
+					}
+					taken[count] = h;
+					count++;
+				} else {
+					k++;
+				}
+			}
+			bucketSize[b] = n;
+		}
+		// buckets wholly before end are finished with for this lap
+		cursor = Math.max(cursor, last);
+		return Arrays.copyOf(taken, count);
+	}
+
+	// forget every infected, starting the calendar again from the current day
+	public void clear() {
+		Arrays.fill(bucketSize, 0);
+		cursor = slot(Parameters.day);
+		size = 0;
+		freeCount = 0;
+		handleCount = 0;
+		Arrays.fill(generation, 0);
+	}
+
+	private long slot(double day) {
+		return (long) Math.floor(day / width);
+	}
+
+	private void insert(int h, long s) {
+		int b = (int) (s & (buckets.length - 1));
+		if (buckets[b] == null) {
+			buckets[b] = new long[4];
+		} else if (bucketSize[b] == buckets[b].length) {
+			buckets[b] = Arrays.copyOf(buckets[b], 2 * bucketSize[b]);
+		}
+		buckets[b][bucketSize[b]] = ((long) generation[h] << 32) | h;
+		bucketSize[b]++;
+	}
+
+	private int newHandle() {
+		if (freeCount > 0) {
+			freeCount--;
+			return free[freeCount];
+		}
+		int h = handleCount;
+		if (h == indexOf.length) {
+			int capacity = Math.max(16, 2 * h);
+			indexOf = Arrays.copyOf(indexOf, capacity);
+			due = Arrays.copyOf(due, capacity);
+			generation = Arrays.copyOf(generation, capacity);
+		}
+		handleCount++;
+		return h;
+	}
+
+}
@@ -0,0 +1,117 @@
+/* Coarse raster of one deme's average risk of infection over a plane of antigenic space, used when Parameters.riskLandscape is set */
+/* Grid points landscapeCell apart hold the average risk of a phenotype placed at the point, as in Simulation.printImmunity */
+/* Points are evaluated on first use and again once older than landscapeInterval days, so the raster follows the deme's immunity */
+/* Points left unread for IDLE_INTERVALS intervals are dropped, releasing their phenotypes' ids in PhenotypeTable, */
+/* so the raster only covers the part of the plane the deme's viruses still occupy */
+/* Points are evaluated without the immune histories' risk caches, which are left to the phenotypes of viruses */
+/* A phenotype's average risk is then interpolated from the four points around it, whatever fitnessSampleSize is */
+/* Only phenotypes of 2 dimensions are rastered, others are passed straight to the exact evaluation */
+/* Each deme has its own landscape, touched only by the thread stepping that deme */
+
+import java.util.*;
+import java.util.function.*;
+
+public class RiskLandscape {
+
+	private static final int IDLE_INTERVALS = 4;		// landscapeIntervals a point may go unread before it is dropped
+
+	// fields
+	private double cell;								// distance between neighbouring grid points
+	private ToDoubleFunction<Phenotype> exact;			// average risk against the deme's current hosts
+	private Map<Long, Point> points = new HashMap<>();	// grid points in use, keyed by column and row
+	private double swept = Double.NEGATIVE_INFINITY;	// when idle points were last dropped
+
+	// constructor
+
+	// raster of the average risks given by exact, which should not fill the caches of immune histories
+	public RiskLandscape(ToDoubleFunction<Phenotype> exact) {
+		this.exact = exact;
+		cell = Parameters.landscapeCell;
+	}
+
+	// methods
+
+	// average risk of infection of a virus with phenotype p, by bilinear interpolation between grid points
+	public double getAverageRisk(Phenotype p) {
+
+		if (p.dimensions() != 2) {
+			return exact.applyAsDouble(p);
+		}
+		dropIdle();
+
+		double x = p.getTrait(0) / cell;
+		double y = p.getTrait(1) / cell;
+		double column = Math.floor(x);
+		double row = Math.floor(y);
+		double u = x - column;
+		double v = y - row;
+		int i = (int) column;
+		int j = (int) row;
+
+		// points with no weight are not evaluated, so a phenotype on the grid costs one point
+		double risk = (1.0 - u) * (1.0 - v) * getRisk(i, j);
+		if (u > 0.0) {
+			risk += u * (1.0 - v) * getRisk(i + 1, j);
+		}
+		if (v > 0.0) {
+			risk += (1.0 - u) * v * getRisk(i, j + 1);
+		}
+		if (u > 0.0 && v > 0.0) {
+			risk += u * v * getRisk(i + 1, j + 1);
+		}
+		return risk;
+
+	}
+
+	// forget every grid point, called when the deme is reset
+	public void clear() {
+		points.clear();
+		swept = Double.NEGATIVE_INFINITY;
+	}
+
+	public int size() {
+		return points.size();
+	}
+
+	// drop the points unread for IDLE_INTERVALS intervals, at most once an interval
+	// a dropped point had gone stale, so reading it again evaluates it afresh just as keeping it would have
+	private void dropIdle() {
+		double idle = IDLE_INTERVALS * Parameters.landscapeInterval;
+		if (Parameters.day >= swept && Parameters.day - swept < Parameters.landscapeInterval) {
+			return;
+		}
+		points.values().removeIf(point -> Parameters.day - point.read >= idle);
+		swept = Parameters.day;
+	}
+
+	// average risk at grid point i, j, evaluated again if it has gone stale
+	private double getRisk(int i, int j) {
+		long key = ((long) i << 32) | (j & 0xffffffffL);
+		Point point = points.get(key);
+		if (point == null) {
+			point = new Point(PhenotypeFactory.makeArbitaryPhenotype(i * cell, j * cell));
+			points.put(key, point);
+		}
+		if (Parameters.day < point.day || Parameters.day - point.day >= Parameters.landscapeInterval) {
+			point.risk = exact.applyAsDouble(point.phenotype);
+			point.day = Parameters.day;
+		}
+		point.read = Parameters.day;
+		return point.risk;
+	}
+
+	// a grid point keeps its phenotype, so the point is added to PhenotypeTable only once while it is in use
+	private static class Point {
+
+		private Phenotype phenotype;
+		private double risk;
+		private double day = Double.NEGATIVE_INFINITY;		// when risk was last evaluated
+		private double read;								// when risk was last read
+
+		Point(Phenotype phenotype) {
+			this.phenotype = phenotype;
+		}
+
+	}
+
+}
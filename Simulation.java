@@ -1,6 +1,8 @@
 /* Simulation functions, holds the host population */
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 import java.io.*;
 
 import com.javamex.classmexer.*;
@@ -25,6 +27,20 @@ public class Simulation {
 	private List<Double> rList = new ArrayList<>();
 	private List<Double> casesList = new ArrayList<>();
 
+	private ForkJoinPool pool;		// only used when demes are stepped in parallel
+	private NextReactionEngine exact;	// only used by the exact engine
+
+	// totals over demes, kept by updateTotals
+	private int totalS;
+	private int totalR;
+	private int totalCases;
+	private FenwickTree prevalence = new FenwickTree();	// infecteds per deme, for picking demes by prevalence
+	private FenwickTree population = new FenwickTree();	// hosts per deme
+	private int[] addedS = new int[Parameters.demeCount];	// per deme, counts as last added into the totals
+	private int[] addedI = new int[Parameters.demeCount];
+	private int[] addedR = new int[Parameters.demeCount];
+	private int[] addedCases = new int[Parameters.demeCount];
+	private LineageStatistics statistics = new LineageStatistics();	// pairs behind diversity, tmrca, netau and the rest
 
 
 	// constructor
@@ -38,53 +54,69 @@ public class Simulation {
 			}
 			demes.add(hp);
 		}
+		if (Parameters.parallelDemes) {
+			if (Parameters.threadCount > 0) {
+				pool = new ForkJoinPool(Parameters.threadCount);
+			} else {
+				pool = ForkJoinPool.commonPool();
+			}
+		}
+		if (Parameters.engine.equals("exact")) {
+			exact = new NextReactionEngine(demes);
+		}
+		LazyFitness.clear();
+		updateTotals();
 	}
 
 	// methods
 
 	public int getN() {
-		int count = 0;
-		for (int i = 0; i < Parameters.demeCount; i++) {
-			HostPopulation hp = demes.get(i);
-			count += hp.getN();
-		}
-		return count;
+		return population.getTotal();
 	}
 
 	public int getS() {
-		int count = 0;
-		for (int i = 0; i < Parameters.demeCount; i++) {
-			HostPopulation hp = demes.get(i);
-			count += hp.getS();
-		}
-		return count;
+		return totalS;
 	}
 
 	public int getI() {
-		int count = 0;
-		for (int i = 0; i < Parameters.demeCount; i++) {
-			HostPopulation hp = demes.get(i);
-			count += hp.getI();
-		}
-		return count;
+		return prevalence.getTotal();
 	}
 
 	public int getR() {
-		int count = 0;
-		for (int i = 0; i < Parameters.demeCount; i++) {
-			HostPopulation hp = demes.get(i);
-			count += hp.getR();
-		}
-		return count;
+		return totalR;
 	}
 
 	public int getCases() {
-		int count = 0;
+		return totalCases;
+	}
+
+	// bring totals and the per-deme trees up to date with the demes
+	// demes only change inside stepForward, reset and resetCases, so this runs at the end of each
+	private void updateTotals() {
 		for (int i = 0; i < Parameters.demeCount; i++) {
-			HostPopulation hp = demes.get(i);
-			count += hp.getCases();
+			updateTotals(i);
+		}
+	}
+
+	// add the changes of one deme since it was last added, touching the trees only where its counts moved
+	private void updateTotals(int deme) {
+		HostPopulation hp = demes.get(deme);
+		int s = hp.getS() - addedS[deme];
+		int i = hp.getI() - addedI[deme];
+		int r = hp.getR() - addedR[deme];
+		totalS += s;
+		totalR += r;
+		totalCases += hp.getCases() - addedCases[deme];
+		if (i != 0) {
+			prevalence.add(deme, i);
 		}
-		return count;
+		if (s + i + r != 0) {
+			population.add(deme, s + i + r);
+		}
+		addedS[deme] = hp.getS();
+		addedI[deme] = hp.getI();
+		addedR[deme] = hp.getR();
+		addedCases[deme] = hp.getCases();
 	}
 
 	public double getDiversity() {
@@ -107,16 +139,10 @@ public class Simulation {
 		return antigenicDiversity;
 	}
 
-	// proportional to infecteds in each deme
+	// proportional to hosts in each deme
 	public int getRandomDeme() {
 		int n = Random.nextInt(0,getN()-1);
-		int d = 0;
-		int target = (demes.get(0)).getN();
-		while (n < target) {
-			d += 1;
-			target += (demes.get(d)).getN();
-		}
-		return d;
+		return population.find(n);
 	}
 
 	// return random virus proportional to worldwide prevalence
@@ -128,23 +154,11 @@ public class Simulation {
 
 			// get deme proportional to prevalence
 			int n = Random.nextInt(0,getI()-1);
-			int d = 0;
-			int target = (demes.get(0)).getI();
-			while (d < Parameters.demeCount) {
-				if (n < target) {
-					break;
-				} else {
-					d++;
-					target += (demes.get(d)).getI();
-				}
-			}
+			int d = prevalence.find(n);
 			HostPopulation hp = demes.get(d);
 
 			// return random infection from this deme
-			if (hp.getI()>0) {
-				Host h = hp.getRandomHostI();
-				v = h.getInfection();
-			}
+			v = hp.getRandomInfection();
 
 		}
 
@@ -230,6 +244,23 @@ public class Simulation {
 		}
 			
 	}
+	// sweep the genealogy, keeping the ancestry of current infections and sampled tips
+	public void pruneGenealogy() {
+		Genealogy.keep(Parameters.urVirus.getNode());
+		Genealogy.keep(VirusTree.getRoot().getNode());
+		for (Virus v : VirusTree.getTips()) {
+			Genealogy.keep(v.getNode());
+		}
+		for (int i = 0; i < Parameters.demeCount; i++) {
+			HostPopulation hp = demes.get(i);
+			hp.keepInfections();
+		}
+		Genealogy.sweep(Parameters.collapseLineages);
+		if (Parameters.lazyFitness) {
+			LazyFitness.resolveKept();
+		}
+	}
+
 	public void makeTrunk() {
 		for (int i = 0; i < Parameters.demeCount; i++) {
 			HostPopulation hp = demes.get(i);
@@ -321,41 +352,95 @@ public class Simulation {
 
 	public void updateDiversity() {
 
-		diversity = 0.0;
-		tmrca = 0.0;
-		antigenicDiversity = 0.0;
-		netau = 0.0;
-		serialInterval = 0.0;
+		if (Parameters.pooledDiversity) {
+			poolDiversity();
+			return;
+		}
 
-		double coalCount = 0.0;
-		double coalOpp = 0.0;
-		double coalWindow = Parameters.netauWindow / 365.0;
+		statistics.clear();
 		int sampleCount = Parameters.diversitySamplingCount;
-
 		for (int i = 0; i < sampleCount; i++) {
 			Virus vA = getRandomInfection();
 			Virus vB = getRandomInfection();
 			if (vA != null && vB != null) {
-				double dist = vA.distance(vB);
-				diversity += dist;
-				if (dist > tmrca) {
-					tmrca = dist;
-				}
-				antigenicDiversity += vA.antigenicDistance(vB);
-				coalOpp += coalWindow;
-				coalCount += vA.coalescence(vB, coalWindow);
-				serialInterval += vA.serialInterval();
+				statistics.add(vA, vB);
 			}
 		}
 
-		diversity /= sampleCount;
-		tmrca /= 2.0;
-		netau = coalOpp / coalCount;
-		serialInterval /= sampleCount;
-		antigenicDiversity /= sampleCount;
+		diversity = statistics.getDiversity();
+		tmrca = statistics.getTmrca();
+		netau = statistics.getNetau();
+		serialInterval = statistics.getSerialInterval();
+		antigenicDiversity = statistics.getAntigenicDiversity();
 
 	}
 
+	// one pass serving the deme values and the global ones, used when pooledDiversity is set
+	// a pair drawn from all infections falls within deme d with probability w * w, w the share of infections in d,
+	// and is then a pair drawn within d, so the pairs each deme draws for itself stand in for those
+	// only the remaining share of diversitySamplingCount is drawn across demes
+	// tmrca is half the longest distance seen in any of the pairs
+	private void poolDiversity() {
+
+		if (pool != null) {
+			forEachDeme(HostPopulation::updateDiversity);
+		} else {
+			for (int i = 0; i < Parameters.demeCount; i++) {
+				demes.get(i).updateDiversity();
+			}
+		}
+
+		diversity = 0.0;
+		tmrca = 0.0;
+		antigenicDiversity = 0.0;
+		serialInterval = 0.0;
+		double coalescence = 0.0;
+		double within = 0.0;
+
+		int total = getI();
+		for (int i = 0; i < Parameters.demeCount; i++) {
+			HostPopulation hp = demes.get(i);
+			if (hp.getI() > 0) {
+				LineageStatistics s = hp.getStatistics();
+				double w = (double) hp.getI() / (double) total;
+				within += w * w;
+				diversity += w * w * s.getDiversity();
+				antigenicDiversity += w * w * s.getAntigenicDiversity();
+				coalescence += w * w * s.getCoalescence();
+				serialInterval += w * s.getSerialInterval();
+				tmrca = Math.max(tmrca, s.getTmrca());
+			}
+		}
+
+		statistics.clear();
+		int crossCount = (int) Math.round(Parameters.diversitySamplingCount * (1.0 - within));
+		int[] pair = new int[2];
+		for (int i = 0; i < crossCount; i++) {
+			getRandomCrossDemes(prevalence, Random.stream(), pair);
+			statistics.add(demes.get(pair[0]).getRandomInfection(), demes.get(pair[1]).getRandomInfection());
+		}
+		if (crossCount > 0) {
+			diversity += (1.0 - within) * statistics.getDiversity();
+			antigenicDiversity += (1.0 - within) * statistics.getAntigenicDiversity();
+			coalescence += (1.0 - within) * statistics.getCoalescence();
+			tmrca = Math.max(tmrca, statistics.getTmrca());
+		}
+
+		netau = (total > 0) ? (Parameters.netauWindow / 365.0) / coalescence : 0.0;
+
+	}
+
+	// demes of two infections drawn from all of them by prevalence, drawn again until the demes differ
+	// so demes a and b come up in proportion to w_a * w_b, the weight poolDiversity gives the pairs across demes
+	// needs infections in at least two demes, and takes 1 / (1 - sum of w_a * w_a) attempts on average
+	static void getRandomCrossDemes(FenwickTree prevalence, RandomStream random, int[] pair) {
+		int total = prevalence.getTotal();
+		do {
+			pair[0] = prevalence.find(random.nextInt(0, total - 1));
+			pair[1] = prevalence.find(random.nextInt(0, total - 1));
+		} while (pair[0] == pair[1]);
+	}
+
 	public void pushLists() {
 		diversityList.add(diversity);
 		tmrcaList.add(tmrca);
@@ -374,25 +459,129 @@ public class Simulation {
 			HostPopulation hp = demes.get(i);
 			hp.resetCases();
 		}
+		updateTotals();
 	}
 
 	public void stepForward() {
 
-		for (int i = 0; i < Parameters.demeCount; i++) {
-			HostPopulation hp = demes.get(i);
-			hp.stepForward();
-			for (int j = 0; j < Parameters.demeCount; j++) {
-				if (i != j) {
-					HostPopulation hpOther = demes.get(j);
-					hp.betweenDemeContact(hpOther);
-				}
+		double stepEnd;
+		if (Parameters.engine.equals("adaptive")) {
+			stepEnd = nextStepEnd();
+			Parameters.stepSize = stepEnd - Parameters.day;
+		} else {
+			stepEnd = Parameters.day + Parameters.deltaT;
+			Parameters.stepSize = Parameters.deltaT;
+		}
+
+		if (exact != null) {
+			exact.advance(stepEnd);
+		} else if (Parameters.parallelDemes) {
+			stepForwardParallel();
+		} else {
+			for (int i = 0; i < Parameters.demeCount; i++) {
+				HostPopulation hp = demes.get(i);
+				hp.stepForward();
+				importAlongNetwork(hp);
+			}
+		}
+
+		for (HostPopulation hp : demes) {
+			hp.flushSamples();
+		}
+		// timestep engines step every deme, the exact engine only changes the demes its events fell in
+		if (exact != null) {
+			for (int k = 0; k < exact.getTouchedCount(); k++) {
+				updateTotals(exact.getTouched(k));
 			}
+			exact.clearTouched();
+		} else {
+			updateTotals();
 		}
 
-		Parameters.day += Parameters.deltaT;
+		if (Parameters.engine.equals("fixed")) {
+			Parameters.day += Parameters.deltaT;
+		} else {
+			Parameters.day = stepEnd;
+		}
 
 	}
 
+	// day at which the next adaptive timestep ends
+	// takes the largest leap that every deme allows, kept between minDeltaT and maxDeltaT
+	// and cut short so that print days are landed on exactly, keeping output on the printStep grid
+	private double nextStepEnd() {
+
+		double tau = Parameters.maxDeltaT;
+		for (HostPopulation hp : demes) {
+			tau = Math.min(tau, hp.getLeapSize());
+		}
+		tau = Math.max(tau, Parameters.minDeltaT);
+
+		double end = Parameters.day + tau;
+		end = Math.min(end, nextMultiple(Parameters.printStep));
+		if (Parameters.sampleHostImmunity) {
+			end = Math.min(end, nextMultiple(Parameters.printHostImmunityStep));
+		}
+		return end;
+
+	}
+
+	// record the current immunity of each deme for fitness deferred by LazyFitness
+	private void snapshotImmunity() {
+		for (HostPopulation hp : demes) {
+			LazyFitness.snapshot(hp);
+		}
+	}
+
+	// whether the current day falls on the grid of days every step apart
+	// adaptive timesteps land on the grid exactly, fixed timesteps land within deltaT of it
+	private boolean onGrid(int step) {
+		if (Parameters.engine.equals("adaptive")) {
+			return Parameters.day % (double) step < 1e-9;
+		}
+		return Parameters.day % (double) step < Parameters.deltaT;
+	}
+
+	// first multiple of step strictly after the current day
+	private double nextMultiple(int step) {
+		double n = Math.floor(Parameters.day / step) + 1;
+		return n * step;
+	}
+
+	// step all demes concurrently, then run between-deme contact against a frozen copy of each deme's infecteds
+	// so that the result does not depend on the order in which demes finish
+	private void stepForwardParallel() {
+
+		forEachDeme(HostPopulation::stepForward);
+		forEachDeme(HostPopulation::snapshotInfecteds);
+		forEachDeme(this::importAlongNetwork);
+		forEachDeme(HostPopulation::clearSnapshot);
+
+	}
+
+	// between-deme contact into hp along each of its incoming network edges
+	private void importAlongNetwork(HostPopulation hp) {
+		DemeNetwork network = Parameters.getDemeNetwork();
+		if (Parameters.aggregateImports) {
+			hp.aggregateImport(demes, network);
+			return;
+		}
+		int d = hp.getDeme();
+		for (int e = network.getInStart(d); e < network.getInStart(d + 1); e++) {
+			HostPopulation hpOther = demes.get(network.getSource(e));
+			hp.betweenDemeContact(hpOther, network.getWeight(e));
+		}
+	}
+
+	// apply action to every deme on the fork-join pool, returning once all demes are done
+	private void forEachDeme(Consumer<HostPopulation> action) {
+		try {
+			pool.submit(() -> demes.parallelStream().forEach(action)).get();
+		} catch (InterruptedException | ExecutionException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
 	public void run() {
 
 		try {
@@ -412,7 +601,10 @@ public class Simulation {
 
 			while (Parameters.day < (double) Parameters.endDay) {
 
-				if (Parameters.day % (double) Parameters.printStep < Parameters.deltaT) {
+				if (onGrid(Parameters.printStep)) {
+					if (Parameters.lazyFitness) {
+						snapshotImmunity();
+					}
 					updateDiversity();
 					printState();
 					if (Parameters.day > Parameters.burnin) {
@@ -423,7 +615,7 @@ public class Simulation {
 				}
 
 				// print immunity if needed
-				if (Parameters.sampleHostImmunity && Parameters.day % (double) Parameters.printHostImmunityStep < Parameters.deltaT) {
+				if (Parameters.sampleHostImmunity && onGrid(Parameters.printHostImmunityStep)) {
 					// Test print
 					historyStream.printf("date:\t" + "%.2f\n", Parameters.day);
 					printHostImmuneHistories(historyStream);
@@ -442,6 +634,11 @@ public class Simulation {
 					}
 				}
 
+				// free the ancestry of lineages that have died out
+				if (Parameters.pruneInterval > 0 && onGrid(Parameters.pruneInterval)) {
+					pruneGenealogy();
+				}
+
 				stepForward();
 
 			}
@@ -467,6 +664,14 @@ public class Simulation {
 		VirusTree.setLayoutByDescendants();
 		VirusTree.streamline();
 
+		// deferred fitness, computed before rotation moves phenotypes
+		if (Parameters.lazyFitness) {
+			snapshotImmunity();
+			List<Virus> output = VirusTree.postOrderNodes();
+			output.addAll(VirusTree.getTips());
+			LazyFitness.resolve(output);
+		}
+
 		// rotation
 		if (Parameters.pcaSamples) {
 			VirusTree.rotate();
@@ -492,8 +697,8 @@ public class Simulation {
 			System.out.println("Writing newick tree file...");
 			VirusTree.printNewick();
 
-			// immunity output
-			if (Parameters.phenotypeSpace.equals("geometric") || Parameters.phenotypeSpace.equals("geometricSeq")) {
+			// immunity output, mapped over the plane so only for 2 dimensional spaces
+			if (Parameters.urImmunity.dimensions() == 2) {
 				VirusTree.updateRange();
 				VirusTree.printRange();
 				if (Parameters.immunityReconstruction) {
@@ -539,7 +744,12 @@ public class Simulation {
 			HostPopulation hp = demes.get(i);
 			hp.reset();
 		}
+		if (exact != null) {
+			exact.reset();
+		}
+		LazyFitness.clear();
 		VirusTree.clear();
+		updateTotals();
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the methods in AliasTable.java
+ */
+public class TestAliasTable {
+
+    /**
+     * Slots must be drawn in proportion to their weights, and zero weights never drawn.
+     */
+    @Test
+    public void testFrequencies() {
+        double[] weights = {5.0, 0.0, 1.0, 2.5, 0.5, 1.0};
+        AliasTable table = new AliasTable();
+        table.build(weights, weights.length);
+        assertEquals(weights.length, table.size());
+        assertEquals(10.0, table.getTotal(), 1e-12);
+
+        RandomStream random = new RandomStream(9);
+        int draws = 200000;
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < draws; i++) {
+            counts[table.sample(random)]++;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals("slot " + i, weights[i] / table.getTotal(), (double) counts[i] / draws, 0.004);
+        }
+        assertEquals(0, counts[1]);
+    }
+
+    /**
+     * A table rebuilt in place from fewer entries must only draw from those entries.
+     */
+    @Test
+    public void testRebuild() {
+        AliasTable table = new AliasTable();
+        table.build(new double[] {1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0}, 8);
+        double[] weights = {0.0, 3.0, 1.0, 99.0};
+        table.build(weights, 3);
+        assertEquals(3, table.size());
+        assertEquals(4.0, table.getTotal(), 1e-12);
+
+        RandomStream random = new RandomStream(10);
+        int draws = 100000;
+        int[] counts = new int[3];
+        for (int i = 0; i < draws; i++) {
+            counts[table.sample(random)]++;
+        }
+        assertEquals(0, counts[0]);
+        assertEquals(0.75, (double) counts[1] / draws, 0.005);
+        assertEquals(0.25, (double) counts[2] / draws, 0.005);
+    }
+
+}
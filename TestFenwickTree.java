@@ -0,0 +1,76 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the methods in FenwickTree.java
+ */
+public class TestFenwickTree {
+
+    /**
+     * Prefix sums and totals must match a plain array through random changes, including growth.
+     */
+    @Test
+    public void testPrefixSums() {
+        RandomStream random = new RandomStream(5);
+        FenwickTree tree = new FenwickTree();
+        int[] counts = new int[100];
+        for (int step = 0; step < 5000; step++) {
+            int i = random.nextInt(0, counts.length - 1);
+            int count = random.nextInt(0, 50);
+            tree.set(i, count);
+            counts[i] = count;
+            if (step % 50 == 0) {
+                int sum = 0;
+                for (int k = 0; k <= counts.length; k++) {
+                    if (k <= tree.capacity()) {
+                        assertEquals(sum, tree.prefixSum(k));
+                    }
+                    if (k < counts.length) {
+                        sum += counts[k];
+                    }
+                }
+                assertEquals(sum, tree.getTotal());
+            }
+        }
+    }
+
+    /**
+     * Unit k must be found in the slot whose prefix range holds it, skipping empty slots.
+     */
+    @Test
+    public void testFind() {
+        FenwickTree tree = new FenwickTree();
+        int[] counts = {3, 0, 1, 0, 0, 4, 2};
+        for (int i = 0; i < counts.length; i++) {
+            tree.set(i, counts[i]);
+        }
+        int k = 0;
+        for (int i = 0; i < counts.length; i++) {
+            for (int j = 0; j < counts[i]; j++) {
+                assertEquals(i, tree.find(k));
+                k++;
+            }
+        }
+        assertEquals(k, tree.getTotal());
+    }
+
+    /**
+     * add changes a slot's count by its delta, and clear empties the tree.
+     */
+    @Test
+    public void testAddAndClear() {
+        FenwickTree tree = new FenwickTree();
+        tree.add(9, 4);
+        tree.add(2, 3);
+        tree.add(9, -1);
+        assertEquals(3, tree.get(9));
+        assertEquals(3, tree.get(2));
+        assertEquals(6, tree.getTotal());
+        assertEquals(3, tree.prefixSum(9));
+        tree.clear();
+        assertEquals(0, tree.getTotal());
+        assertEquals(0, tree.capacity());
+    }
+
+}
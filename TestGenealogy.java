@@ -0,0 +1,197 @@
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the methods in Genealogy.java
+ * Genealogy is static, so each test grows its own lineages and only reads the nodes it kept
+ */
+public class TestGenealogy {
+
+    /**
+     * A random genealogy of lineages branching off each other over three demes.
+     */
+    private static int[] grow(RandomStream random, int size) {
+        int[] nodes = new int[size];
+        for (int i = 0; i < size; i++) {
+            int parent = (i < 2) ? Genealogy.NONE : nodes[random.nextInt(0, i - 1)];
+            double birth = (parent == Genealogy.NONE) ? 0.0 : Genealogy.getBirth(parent) + random.nextDouble(0.0, 1.0);
+            nodes[i] = Genealogy.add(parent, i % 3, null, birth);
+        }
+        return nodes;
+    }
+
+    private static List<Integer> ancestry(int node) {
+        List<Integer> ancestors = new ArrayList<>();
+        for (int n = node; n != Genealogy.NONE; n = Genealogy.getParent(n)) {
+            ancestors.add(n);
+        }
+        return ancestors;
+    }
+
+    private static int naiveCommonAncestor(int a, int b) {
+        Set<Integer> seen = new HashSet<>(ancestry(a));
+        for (int n : ancestry(b)) {
+            if (seen.contains(n)) {
+                return n;
+            }
+        }
+        return Genealogy.NONE;
+    }
+
+    /**
+     * A sweep without collapsing must leave the ancestry of every kept node as it was,
+     * and hand the nodes it frees back out rather than any node still in use.
+     */
+    @Test
+    public void testSweepKeepsAncestry() {
+        RandomStream random = new RandomStream(31);
+        int[] nodes = grow(random, 3000);
+        int[] kept = new int[60];
+        Map<Integer, List<Integer>> before = new HashMap<>();
+        Map<Integer, Double> births = new HashMap<>();
+        for (int k = 0; k < kept.length; k++) {
+            kept[k] = nodes[random.nextInt(0, nodes.length - 1)];
+            before.put(kept[k], ancestry(kept[k]));
+            for (int n : ancestry(kept[k])) {
+                births.put(n, Genealogy.getBirth(n));
+            }
+        }
+
+        for (int node : kept) {
+            Genealogy.keep(node);
+        }
+        Genealogy.sweep(false);
+
+        for (int node : kept) {
+            List<Integer> after = ancestry(node);
+            assertEquals(before.get(node), after);
+            assertEquals(after.size() - 1, Genealogy.getDepth(node));
+            for (int n : after) {
+                assertEquals(births.get(n), Genealogy.getBirth(n), 0.0);
+            }
+        }
+
+        int reused = 0;
+        for (int i = 0; i < 1000; i++) {
+            int node = Genealogy.add(kept[0], i % 3, null, 10.0);
+            assertFalse(births.containsKey(node));
+            if (Arrays.stream(nodes).anyMatch(n -> n == node)) {
+                reused++;
+            }
+        }
+        assertTrue(reused > 0);
+    }
+
+    /**
+     * A collapsing sweep must keep the parents of kept nodes and the common ancestor of any two kept nodes,
+     * with their births, and leave every kept node's ancestry a part of what it was.
+     */
+    @Test
+    public void testCollapseKeepsCommonAncestors() {
+        RandomStream random = new RandomStream(32);
+        int[] nodes = grow(random, 3000);
+        int[] kept = new int[40];
+        Map<Integer, List<Integer>> before = new HashMap<>();
+        for (int k = 0; k < kept.length; k++) {
+            kept[k] = nodes[random.nextInt(0, nodes.length - 1)];
+            before.put(kept[k], ancestry(kept[k]));
+        }
+        int[][] common = new int[kept.length][kept.length];
+        double[][] commonBirth = new double[kept.length][kept.length];
+        for (int a = 0; a < kept.length; a++) {
+            for (int b = 0; b < kept.length; b++) {
+                common[a][b] = naiveCommonAncestor(kept[a], kept[b]);
+                if (common[a][b] != Genealogy.NONE) {
+                    commonBirth[a][b] = Genealogy.getBirth(common[a][b]);
+                }
+            }
+        }
+        int[] parents = new int[kept.length];
+        for (int k = 0; k < kept.length; k++) {
+            parents[k] = Genealogy.getParent(kept[k]);
+        }
+
+        for (int node : kept) {
+            Genealogy.keep(node);
+        }
+        Genealogy.sweep(true);
+
+        int collapsed = 0;
+        for (int k = 0; k < kept.length; k++) {
+            assertEquals(parents[k], Genealogy.getParent(kept[k]));
+            List<Integer> after = ancestry(kept[k]);
+            assertTrue(before.get(kept[k]).containsAll(after));
+            assertEquals(after.size() - 1, Genealogy.getDepth(kept[k]));
+            collapsed += before.get(kept[k]).size() - after.size();
+        }
+        assertTrue(collapsed > 0);
+        for (int a = 0; a < kept.length; a++) {
+            for (int b = 0; b < kept.length; b++) {
+                assertEquals(common[a][b], naiveCommonAncestor(kept[a], kept[b]));
+                if (common[a][b] != Genealogy.NONE) {
+                    assertEquals(commonBirth[a][b], Genealogy.getBirth(common[a][b]), 0.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Common ancestors and ancestors at a depth must agree with walking the parents, over deep lineages
+     * evolving through sweeps with and without collapsing, and lineages of separate roots must have none.
+     */
+    @Test
+    public void testCommonAncestorMatchesWalk() {
+        RandomStream random = new RandomStream(33);
+        int[] live = grow(random, 40);
+        double day = 40.0;
+
+        int rootA = Genealogy.add(Genealogy.NONE, 0, null, 0.0);
+        int rootB = Genealogy.add(Genealogy.NONE, 1, null, 0.0);
+        int childA = Genealogy.add(Genealogy.add(rootA, 0, null, 1.0), 2, null, 2.0);
+        int childB = Genealogy.add(rootB, 1, null, 1.0);
+        assertEquals(Genealogy.NONE, Genealogy.commonAncestor(childA, childB));
+        assertEquals(rootA, Genealogy.commonAncestor(childA, rootA));
+        assertEquals(rootA, Genealogy.getAncestor(childA, 0));
+
+        for (int round = 0; round < 4; round++) {
+            for (int step = 0; step < 30000; step++) {
+                int parent = live[random.nextInt(0, live.length - 1)];
+                live[random.nextInt(0, live.length - 1)] = Genealogy.add(parent, random.nextInt(0, 2), null, day);
+                day += 0.001;
+            }
+            Map<Long, Integer> common = new HashMap<>();
+            for (int q = 0; q < 2000; q++) {
+                int a = live[random.nextInt(0, live.length - 1)];
+                int b = live[random.nextInt(0, live.length - 1)];
+                int ancestor = Genealogy.commonAncestor(a, b);
+                assertEquals(naiveCommonAncestor(a, b), ancestor);
+                common.put(((long) a << 32) | (b & 0xffffffffL), ancestor);
+
+                int depth = random.nextInt(0, Genealogy.getDepth(a));
+                int at = Genealogy.getAncestor(a, depth);
+                assertEquals(depth, ancestry(at).size() - 1);
+                assertEquals(depth, Genealogy.getDepth(at));
+                assertTrue(ancestry(a).contains(at));
+            }
+
+            for (int node : live) {
+                Genealogy.keep(node);
+            }
+            Genealogy.sweep(round % 2 == 1);
+
+            for (Map.Entry<Long, Integer> e : common.entrySet()) {
+                int a = (int) (e.getKey() >>> 32);
+                int b = (int) (long) e.getKey();
+                assertEquals((int) e.getValue(), Genealogy.commonAncestor(a, b));
+                assertEquals((int) e.getValue(), naiveCommonAncestor(a, b));
+            }
+            for (int node : live) {
+                assertEquals(ancestry(node).size() - 1, Genealogy.getDepth(node));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the methods in IndexedPriorityQueue.java
+ */
+public class TestIndexedPriorityQueue {
+
+    /**
+     * Every index starts with an infinite key.
+     */
+    @Test
+    public void testStartsInfinite() {
+        IndexedPriorityQueue queue = new IndexedPriorityQueue(5);
+        assertEquals(5, queue.size());
+        assertEquals(Double.POSITIVE_INFINITY, queue.peekKey(), 0.0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Double.POSITIVE_INFINITY, queue.getKey(i), 0.0);
+        }
+    }
+
+    /**
+     * After any sequence of raised and lowered keys, peek must give an index holding the smallest key.
+     */
+    @Test
+    public void testPeekFollowsUpdates() {
+        RandomStream random = new RandomStream(3);
+        int n = 37;
+        IndexedPriorityQueue queue = new IndexedPriorityQueue(n);
+        double[] keys = new double[n];
+        java.util.Arrays.fill(keys, Double.POSITIVE_INFINITY);
+        for (int step = 0; step < 20000; step++) {
+            int i = random.nextInt(0, n - 1);
+            double key = random.nextBoolean(0.1) ? Double.POSITIVE_INFINITY : random.nextDouble(0.0, 100.0);
+            queue.update(i, key);
+            keys[i] = key;
+
+            double min = Double.POSITIVE_INFINITY;
+            for (double k : keys) {
+                min = Math.min(min, k);
+            }
+            assertEquals(min, queue.peekKey(), 0.0);
+            assertEquals(min, keys[queue.peek()], 0.0);
+            assertEquals(key, queue.getKey(i), 0.0);
+        }
+    }
+
+}
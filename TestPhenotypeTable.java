@@ -0,0 +1,135 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the risk of infection evaluated over the packed coordinates of PhenotypeTable.java
+ */
+public class TestPhenotypeTable {
+
+    /**
+     * Risks from the table, with and without bounds and in a batch, must equal those of GeometricPhenotype exactly,
+     * over histories clustered away from the virus, holding near duplicates or holding the virus itself.
+     */
+    @Test
+    public void testRiskMatchesPhenotype() {
+        RandomStream random = new RandomStream(3);
+        double smithConversion = Parameters.smithConversion;
+        int contacts = 0;
+        for (double smith : new double[] {0.1, 0.05, 0.3}) {
+            Parameters.smithConversion = smith;
+            int n = 5000;
+            int[] viruses = new int[n];
+            int[][] histories = new int[n][];
+            double[][] bounds = new double[n][];
+            double[] expected = new double[n];
+            for (int t = 0; t < n; t++) {
+                int length = random.nextInt(0, 39);
+                double cx = random.nextNormal() * 20.0;
+                double cy = random.nextNormal() * 20.0;
+                Phenotype[] history = new Phenotype[length];
+                int[] ids = new int[length];
+                for (int i = 0; i < length; i++) {
+                    history[i] = new GeometricPhenotype(cx + random.nextNormal() * 3.0, cy + random.nextNormal() * 3.0);
+                    ids[i] = PhenotypeTable.idOf(history[i]);
+                }
+                if (length > 1 && random.nextBoolean(0.2)) {
+                    GeometricPhenotype first = (GeometricPhenotype) history[0];
+                    history[length - 1] = new GeometricPhenotype(first.getTraitA() + 0.001 * random.nextDouble(), first.getTraitB());
+                    ids[length - 1] = PhenotypeTable.idOf(history[length - 1]);
+                }
+                Phenotype p;
+                if (length > 0 && random.nextBoolean(0.25)) {
+                    p = history[random.nextInt(0, length - 1)];
+                } else {
+                    p = new GeometricPhenotype(cx + random.nextNormal() * 15.0, cy + random.nextNormal() * 15.0);
+                }
+
+                expected[t] = p.riskOfInfection(history);
+                assertEquals(expected[t], PhenotypeTable.riskOfInfection(p, ids), 0.0);
+                assertEquals(expected[t], PhenotypeTable.riskOfInfection(p, ids, PhenotypeTable.boundsOf(ids)), 0.0);
+
+                viruses[t] = PhenotypeTable.idOf(p);
+                histories[t] = ids;
+                bounds[t] = (t % 2 == 0) ? PhenotypeTable.boundsOf(ids) : null;
+            }
+
+            double[] risks = new double[n];
+            PhenotypeTable.riskOfInfection(viruses, histories, bounds, n, risks);
+            for (int t = 0; t < n; t++) {
+                assertEquals(expected[t], risks[t], 0.0);
+            }
+            contacts += n;
+        }
+        Parameters.smithConversion = smithConversion;
+        assertEquals(15000, contacts);
+    }
+
+    /**
+     * Phenotypes of two and then three dimensions in one table must each keep their own coordinates,
+     * and take the same distances and risks as computed directly from those coordinates.
+     */
+    @Test
+    public void testDimensionsShareTable() {
+        RandomStream random = new RandomStream(4);
+        int n = 5000;
+        GeometricPhenotypeND[] planar = new GeometricPhenotypeND[n];
+        GeometricPhenotypeND[] spatial = new GeometricPhenotypeND[n];
+        double[][] planarTraits = new double[n][];
+        double[][] spatialTraits = new double[n][];
+        for (int k = 0; k < n; k++) {
+            planarTraits[k] = new double[] {random.nextNormal() * 5.0, random.nextNormal() * 5.0};
+            planar[k] = new GeometricPhenotypeND(planarTraits[k]);
+        }
+        for (int k = 0; k < n; k++) {
+            spatialTraits[k] = new double[] {random.nextNormal() * 5.0, random.nextNormal() * 5.0, random.nextNormal() * 5.0};
+            spatial[k] = new GeometricPhenotypeND(spatialTraits[k]);
+        }
+
+        for (int k = 0; k < n; k++) {
+            assertEquals(2, planar[k].dimensions());
+            assertEquals(3, spatial[k].dimensions());
+            assertArrayEquals(planarTraits[k], new double[] {planar[k].getTrait(0), planar[k].getTrait(1)}, 0.0);
+            assertArrayEquals(spatialTraits[k], new double[] {spatial[k].getTrait(0), spatial[k].getTrait(1), spatial[k].getTrait(2)}, 0.0);
+        }
+
+        for (GeometricPhenotypeND[] phenotypes : new GeometricPhenotypeND[][] {planar, spatial}) {
+            for (int t = 0; t < 500; t++) {
+                GeometricPhenotypeND p = phenotypes[random.nextInt(0, n - 1)];
+                int[] history = new int[random.nextInt(1, 20)];
+                double closest = 100.0;
+                for (int i = 0; i < history.length; i++) {
+                    GeometricPhenotypeND h = phenotypes[random.nextInt(0, n - 1)];
+                    history[i] = PhenotypeTable.idOf(h);
+                    double squared = 0.0;
+                    for (int d = 0; d < p.dimensions(); d++) {
+                        squared += (p.getTrait(d) - h.getTrait(d)) * (p.getTrait(d) - h.getTrait(d));
+                    }
+                    assertEquals(Math.sqrt(squared), p.distance(h), 0.0);
+                    closest = Math.min(closest, Math.sqrt(squared));
+                }
+                double expected = Math.min(1.0, Math.max(1.0 - Parameters.homologousImmunity, closest * Parameters.smithConversion));
+                assertEquals(expected, PhenotypeTable.riskOfInfection(p, history), 0.0);
+                assertEquals(expected, PhenotypeTable.riskOfInfection(p, history, PhenotypeTable.boundsOf(history)), 0.0);
+                assertEquals(2 * p.dimensions(), PhenotypeTable.boundsOf(history).length);
+            }
+        }
+    }
+
+    /**
+     * Ids must follow the order phenotypes are made in, and never be handed out again once released.
+     */
+    @Test
+    public void testIdsFollowCreation() {
+        int previous = new GeometricPhenotypeND(new double[] {0.0, 0.0}).getId();
+        for (int k = 0; k < 10000; k++) {
+            int id = new GeometricPhenotypeND(new double[] {k, 0.0}).getId();
+            assertTrue(id > previous);
+            previous = id;
+            if (k % 1000 == 0) {
+                System.gc();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the pair draws behind Simulation.poolDiversity
+ */
+public class TestPooledDiversity {
+
+    /**
+     * Pairs drawn across demes must come up in proportion to the product of the demes' shares of infections,
+     * normalised over pairs of different demes, however unequal the demes are.
+     */
+    @Test
+    public void testCrossDemePairFrequencies() {
+        int[] infections = {600, 300, 100, 0};
+        FenwickTree prevalence = new FenwickTree();
+        for (int d = 0; d < infections.length; d++) {
+            prevalence.set(d, infections[d]);
+        }
+
+        double total = prevalence.getTotal();
+        double within = 0.0;
+        for (int count : infections) {
+            within += (count / total) * (count / total);
+        }
+
+        RandomStream random = new RandomStream(11);
+        int draws = 400000;
+        int[][] counts = new int[infections.length][infections.length];
+        int[] pair = new int[2];
+        for (int i = 0; i < draws; i++) {
+            Simulation.getRandomCrossDemes(prevalence, random, pair);
+            counts[pair[0]][pair[1]]++;
+        }
+
+        for (int a = 0; a < infections.length; a++) {
+            for (int b = 0; b < infections.length; b++) {
+                double expected = 0.0;
+                if (a != b) {
+                    expected = (infections[a] / total) * (infections[b] / total) / (1.0 - within);
+                }
+                assertEquals("pair " + a + "," + b, expected, (double) counts[a][b] / draws, 0.003);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the methods in RandomStream.java and the stream binding in Random.java
+ */
+public class TestRandomStream {
+
+    /**
+     * Two streams built from the same seed must produce identical draws.
+     */
+    @Test
+    public void testSameSeedSameDraws() {
+        RandomStream a = new RandomStream(42);
+        RandomStream b = new RandomStream(42);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.nextInt(0, 99), b.nextInt(0, 99));
+            assertEquals(a.nextPoisson(3.5), b.nextPoisson(3.5));
+            assertEquals(a.nextGamma(2.0, 0.5), b.nextGamma(2.0, 0.5), 0.0);
+            assertEquals(a.nextNormal(), b.nextNormal(), 0.0);
+        }
+    }
+
+    /**
+     * Splitting in the same order from the same seed must give the same child streams.
+     */
+    @Test
+    public void testSplitIsReproducible() {
+        RandomStream a = new RandomStream(7);
+        RandomStream b = new RandomStream(7);
+        RandomStream a1 = a.split();
+        RandomStream a2 = a.split();
+        RandomStream b1 = b.split();
+        RandomStream b2 = b.split();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(a1.nextDouble(), b1.nextDouble(), 0.0);
+            assertEquals(a2.nextDouble(), b2.nextDouble(), 0.0);
+        }
+    }
+
+    /**
+     * Draws must respect the requested ranges, including the degenerate Poisson mean of 0.
+     */
+    @Test
+    public void testRanges() {
+        RandomStream r = new RandomStream(1);
+        for (int i = 0; i < 10000; i++) {
+            int n = r.nextInt(3, 5);
+            assertTrue(n >= 3 && n <= 5);
+            double x = r.nextDouble();
+            assertTrue(x > 0.0 && x < 1.0);
+            assertEquals(0, r.nextPoisson(0.0));
+        }
+    }
+
+    /**
+     * Static draws follow the stream bound to the calling thread, and restoring the previous binding
+     * returns to the root stream.
+     */
+    @Test
+    public void testBinding() {
+        Random.setSeed(11);
+        RandomStream bound = new RandomStream(5);
+        RandomStream reference = new RandomStream(5);
+        RandomStream previous = Random.use(bound);
+        assertEquals(reference.nextDouble(), Random.nextDouble(), 0.0);
+        Random.use(previous);
+        assertSame(Random.stream(), Random.stream());
+        assertNotSame(bound, Random.stream());
+    }
+
+}
@@ -0,0 +1,77 @@
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the methods in RecoveryCalendar.java
+ */
+public class TestRecoveryCalendar {
+
+    /**
+     * Mirroring a dense infected list through random additions and early removals, each step must take out
+     * exactly the infecteds due before its end, including ones due many laps of the ring ahead.
+     */
+    @Test
+    public void testTakesExactlyTheDue() {
+        Parameters.day = 0.0;
+        double width = 1.0;
+        RecoveryCalendar calendar = new RecoveryCalendar(width, 5.0);
+        List<Double> due = new ArrayList<>();
+        RandomStream random = new RandomStream(21);
+
+        for (int step = 0; step < 2000; step++) {
+            double day = step * width;
+            double end = day + width;
+
+            int additions = random.nextInt(0, 6);
+            for (int k = 0; k < additions; k++) {
+                double d = day + random.nextExponential(5.0);
+                if (random.nextBoolean(0.02)) {
+                    d = day + 300.0 + random.nextDouble(0.0, 50.0);
+                }
+                calendar.add(d);
+                due.add(d);
+            }
+            if (!due.isEmpty() && random.nextBoolean(0.3)) {
+                int i = random.nextInt(0, due.size() - 1);
+                calendar.remove(i);
+                due.set(i, due.get(due.size() - 1));
+                due.remove(due.size() - 1);
+            }
+
+            int[] taken = calendar.takeDue(end);
+            Set<Integer> seen = new HashSet<>();
+            for (int h : taken) {
+                assertTrue(seen.add(h));
+                assertTrue(due.get(calendar.indexOf(h)) < end);
+            }
+            for (int h : taken) {
+                int i = calendar.indexOf(h);
+                calendar.remove(i);
+                due.set(i, due.get(due.size() - 1));
+                due.remove(due.size() - 1);
+            }
+            for (double d : due) {
+                assertTrue(d >= end);
+            }
+            assertEquals(due.size(), calendar.size());
+        }
+    }
+
+    /**
+     * A cleared calendar must hold nothing and take nothing.
+     */
+    @Test
+    public void testClear() {
+        Parameters.day = 0.0;
+        RecoveryCalendar calendar = new RecoveryCalendar(1.0, 5.0);
+        calendar.add(0.5);
+        calendar.add(2.5);
+        calendar.clear();
+        assertEquals(0, calendar.size());
+        assertEquals(0, calendar.takeDue(10.0).length);
+    }
+
+}
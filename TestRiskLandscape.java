@@ -0,0 +1,51 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the methods in RiskLandscape.java
+ */
+public class TestRiskLandscape {
+
+    /**
+     * Points left unread for several intervals must be dropped, and the landscape must still interpolate
+     * the same risks, evaluating dropped points again when they are next read.
+     */
+    @Test
+    public void testDropsIdlePoints() {
+        String phenotypeSpace = Parameters.phenotypeSpace;
+        double day = Parameters.day;
+        Parameters.phenotypeSpace = PhenotypeFactory.GEOMETRIC;
+        Parameters.day = 0.0;
+        int[] evaluations = new int[1];
+        RiskLandscape landscape = new RiskLandscape(p -> {
+            evaluations[0]++;
+            return 0.5 + 0.01 * p.getTrait(0) - 0.002 * p.getTrait(1);
+        });
+
+        RandomStream random = new RandomStream(5);
+        for (int k = 0; k < 200; k++) {
+            double x = random.nextDouble(0.0, 5.0);
+            double y = random.nextDouble(0.0, 5.0);
+            Phenotype p = new GeometricPhenotype(x, y);
+            assertEquals(0.5 + 0.01 * x - 0.002 * y, landscape.getAverageRisk(p), 1e-12);
+        }
+        int near = landscape.size();
+        assertTrue(near > 0);
+
+        for (int step = 1; step <= 20; step++) {
+            Parameters.day = step * Parameters.landscapeInterval;
+            Phenotype p = new GeometricPhenotype(100.0 + 0.1 * step, 0.0);
+            assertEquals(0.5 + 0.01 * (100.0 + 0.1 * step), landscape.getAverageRisk(p), 1e-12);
+        }
+        assertTrue(landscape.size() < near);
+
+        int before = evaluations[0];
+        assertEquals(0.5 + 0.01 * 2.0 - 0.002 * 3.0, landscape.getAverageRisk(new GeometricPhenotype(2.0, 3.0)), 1e-12);
+        assertTrue(evaluations[0] > before);
+
+        Parameters.phenotypeSpace = phenotypeSpace;
+        Parameters.day = day;
+    }
+
+}
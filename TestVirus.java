@@ -0,0 +1,127 @@
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class for testing the genealogical measures in Virus.java
+ */
+public class TestVirus {
+
+    /**
+     * Coalescence as it was first written: walk each lineage back while the ancestor reached is younger than
+     * the window, and report a coalescence if the second walk reaches an ancestor the first walk reached.
+     */
+    private static double walkedCoalescence(int a, int b, double windowTime) {
+        Set<Integer> reached = new HashSet<>();
+        double start = Genealogy.getBirth(a);
+        double time = start;
+        int node = a;
+        while (time > start - windowTime) {
+            int parent = Genealogy.getParent(node);
+            if (parent == Genealogy.NONE) {
+                break;
+            }
+            node = parent;
+            time = Genealogy.getBirth(node);
+            reached.add(node);
+        }
+        start = Genealogy.getBirth(b);
+        time = start;
+        node = b;
+        while (time > start - windowTime) {
+            int parent = Genealogy.getParent(node);
+            if (parent == Genealogy.NONE) {
+                break;
+            }
+            node = parent;
+            time = Genealogy.getBirth(node);
+            if (!reached.add(node)) {
+                return 1.0;
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Coalescence through the ancestor index must equal the walk, for pairs of lineages, a lineage and itself,
+     * and a lineage and one of its ancestors, over short and long windows and through a collapsing sweep.
+     */
+    @Test
+    public void testCoalescenceMatchesWalk() {
+        RandomStream random = new RandomStream(41);
+        int[] live = new int[40];
+        List<Integer> sampled = new ArrayList<>();
+        double day = 0.0;
+        for (int i = 0; i < live.length; i++) {
+            int parent = (i < 2) ? Genealogy.NONE : live[random.nextInt(0, i - 1)];
+            live[i] = Genealogy.add(parent, 0, null, day);
+            sampled.add(live[i]);
+        }
+
+        int ones = 0;
+        for (int round = 0; round < 4; round++) {
+            for (int step = 0; step < 20000; step++) {
+                if (random.nextBoolean(0.3)) {
+                    day += 0.01;
+                }
+                int child = Genealogy.add(live[random.nextInt(0, live.length - 1)], 0, null, day);
+                live[random.nextInt(0, live.length - 1)] = child;
+                if (random.nextBoolean(0.05)) {
+                    sampled.add(child);
+                }
+            }
+            if (round == 2) {
+                for (int node : live) {
+                    Genealogy.keep(node);
+                }
+                for (int node : sampled) {
+                    Genealogy.keep(node);
+                }
+                Genealogy.sweep(true);
+            }
+
+            for (int q = 0; q < 5000; q++) {
+                int a = live[random.nextInt(0, live.length - 1)];
+                int b;
+                int mode = random.nextInt(0, 3);
+                if (mode == 0) {
+                    b = a;
+                } else if (mode == 1) {
+                    b = Genealogy.getAncestor(a, random.nextInt(0, Genealogy.getDepth(a)));
+                    if (random.nextBoolean(0.5)) {
+                        int t = a;
+                        a = b;
+                        b = t;
+                    }
+                } else {
+                    b = live[random.nextInt(0, live.length - 1)];
+                }
+                double window = random.nextDouble() * (random.nextBoolean(0.5) ? 0.5 : 30.0);
+
+                double expected = walkedCoalescence(a, b, window);
+                assertEquals(expected, Virus.of(a).coalescence(Virus.of(b), window), 0.0);
+                if (expected == 1.0) {
+                    ones++;
+                }
+            }
+        }
+        assertTrue(ones > 0);
+    }
+
+    /**
+     * Distance is the time from each virus back to their common ancestor, and 0 for lineages of separate roots.
+     */
+    @Test
+    public void testDistance() {
+        int root = Genealogy.add(Genealogy.NONE, 0, null, 1.0);
+        int a = Genealogy.add(Genealogy.add(root, 0, null, 1.5), 0, null, 2.0);
+        int b = Genealogy.add(root, 1, null, 3.0);
+        int other = Genealogy.add(Genealogy.NONE, 2, null, 0.0);
+        assertEquals(3.0, Virus.of(a).distance(Virus.of(b)), 1e-12);
+        assertEquals(1.0, Virus.of(a).distance(Virus.of(root)), 1e-12);
+        assertEquals(0.0, Virus.of(a).distance(Virus.of(other)), 0.0);
+    }
+
+}
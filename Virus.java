@@ -1,112 +1,112 @@
 /* Virus infection that has genotype, phenotype and ancestry */
+/* A view of one node of Genealogy, several Virus objects may view the same node and are then equal */
 
 import java.util.*;
 
 public class Virus {
 
-	// simulation fields
-	private Virus parent;
-	private Phenotype phenotype;
-	private double birth;		// measured in years relative to burnin
-	private int deme;
-	private double fitness; 	// average risk of infection of 100,000 hosts
-	
-	// additional reconstruction fields
-	private boolean marked;
-	private boolean trunk;	// fill this at the end of the simulation
-	private List<Virus> children = new ArrayList<>(0);	// will be void until simulation ends
-	private double layout;
-	private int coverage;		// how many times this Virus has been covered in tracing the tree backwards
+	// fields
+	private final int node;		// node of this virus in Genealogy, which holds its parent, phenotype, birth, deme and fitness
 	
 	// initialization
 	public Virus() {
-		phenotype = PhenotypeFactory.makeVirusPhenotype();
-		birth = Parameters.getDate();
+		node = Genealogy.add(Genealogy.NONE, 0, PhenotypeFactory.makeVirusPhenotype(), Parameters.getDate());
 	}
 		
 	// replication, copies the virus, but remembers the ancestry
 	public Virus(Virus v, int d) {
-		parent = v;
-		phenotype = v.getPhenotype();
-		birth = Parameters.getDate();
-		deme = d;
+		node = Genealogy.add(v.node, d, v.getPhenotype(), Parameters.getDate());
 	}
 	
 	public Virus(Virus v, int d, Phenotype p) {
-		parent = v;
-		phenotype = p;
-		birth = Parameters.getDate();
-		deme = d;
+		node = Genealogy.add(v.node, d, p, Parameters.getDate());
 	}	
 	
 	public Virus(int d, Phenotype p) {
-		parent = null;
-		phenotype = p;
-		birth = Parameters.getDate();
-		deme = d;
+		node = Genealogy.add(Genealogy.NONE, d, p, Parameters.getDate());
 	}		
 	
+	// view of an existing node
+	private Virus(int node) {
+		this.node = node;
+	}
+	
+	// view of node, null for Genealogy.NONE
+	public static Virus of(int node) {
+		if (node == Genealogy.NONE) {
+			return null;
+		}
+		return new Virus(node);
+	}
+	
 	// methods
+	public int getNode() {
+		return node;
+	}
 	public Phenotype getPhenotype() {
-		return phenotype;
+		return Genealogy.getPhenotype(node);
 	}
 	public void setPhenotype(Phenotype p) {
-		phenotype = p;
+		Genealogy.setPhenotype(node, p);
 	}	
 	public double getBirth() {
-		return birth;
+		return Genealogy.getBirth(node);
 	}
 	public Virus getParent() {
-		return parent;
+		return of(Genealogy.getParent(node));
 	}
 	public void setParent(Virus v) {
-		parent = v;
+		Genealogy.setParent(node, (v == null) ? Genealogy.NONE : v.node);
 	}
 	public boolean isTrunk() {
-		return trunk; 
+		return Genealogy.isTrunk(node); 
 	}
 	public void makeTrunk() {
-		trunk = true;
+		Genealogy.makeTrunk(node);
 	}
 	public void mark() {
-		marked = true;
+		Genealogy.mark(node);
 	}
 	public boolean isMarked() {
-		return marked;
+		return Genealogy.isMarked(node);
 	}
 	public int getDeme() {
-		return deme;
+		return Genealogy.getDeme(node);
 	}	
 	public double getLayout() {
-		return layout;
+		return Genealogy.getLayout(node);
 	}
 	public void setLayout(double y) {
-		layout = y;
+		Genealogy.setLayout(node, y);
 	}
 	public int getCoverage() {
-		return coverage;
+		return Genealogy.getCoverage(node);
 	}
 	public void incrementCoverage() {
-		coverage++;
+		Genealogy.incrementCoverage(node);
 	}
 	public double getFitness(){
-		return fitness;
+		return Genealogy.getFitness(node);
 	}
 	public void setFitness(double f){
-		fitness = f;
+		Genealogy.setFitness(node, f);
+	}
+	public int getFitnessSnapshot() {
+		return Genealogy.getFitnessSnapshot(node);
+	}
+	public void setFitnessSnapshot(int i) {
+		Genealogy.setFitnessSnapshot(node, i);
 	}
 	
 	// add virus node as child if does not already exist
 	public void addChild(Virus v) {
-		if (!children.contains(v)) {
-			children.add(v);
-		}
+		Genealogy.addChild(node, v);
 	}		
 	public int getNumberOfChildren() {
-		return children.size();
+		return getChildren().size();
 	}
 	public List<Virus> getChildren() {
-		return children;
+		return Genealogy.getChildren(node);
 	}	
 	public boolean isTip() {
 		return getNumberOfChildren() == 0;
@@ -115,50 +115,27 @@ public class Virus {
 	// returns a mutated copy, original virus left intact
 	public Virus mutate() {
 	
-		Phenotype mutP = phenotype.mutate();			// mutated copy
-		Virus mutV = new Virus(this,deme,mutP);
+		Phenotype mutP = getPhenotype().mutate();			// mutated copy
+		Virus mutV = new Virus(this,getDeme(),mutP);
 		return mutV;
 		
 	}
 	
+	// lowest common ancestor, this or virusB if one is an ancestor of the other, null if they share no root
+	// found through the depths and jump pointers of Genealogy, in O(log depth) steps
 	public Virus commonAncestor(Virus virusB) {
-		// Algorithm proceeds by recursively visiting parents.
-		// It terminates when either lineage arrives at a node already in the ancestry set,
-		// which must have been already visited by the other lineage and thus represents
-		// a common ancestor.
-		
-		assert(virusB != null);
-		if(virusB == this) {
-			return this;
-		}
-		
-		Virus lineageA = this;
-		Virus lineageB = virusB;
-		Set<Virus> ancestrySet = new HashSet<>();
-		ancestrySet.add(lineageA);
-		ancestrySet.add(lineageB);
-		while(lineageA != null || lineageB != null) {
-			if(lineageA != null) {
-				lineageA = lineageA.getParent();
-				if(lineageA != null && !ancestrySet.add(lineageA)) {
-					return lineageA;
-				}
-			}
-			if(lineageB != null) {
-				lineageB = lineageB.getParent();
-				if(lineageB != null && !ancestrySet.add(lineageB)) {
-					return lineageB;
-				}
-			}
-		}
-		return null;
+		return of(Genealogy.commonAncestor(node, virusB.node));
 	}
 	
 	public double distance(Virus virusB) {
-		Virus ancestor = commonAncestor(virusB);
-		if (ancestor != null) {
-			double distA = getBirth() - ancestor.getBirth();
-			double distB = virusB.getBirth() - ancestor.getBirth();
+		return distance(virusB, Genealogy.commonAncestor(node, virusB.node));
+	}
+
+	// distance through ancestor, the common ancestor of this and virusB, so that a caller needing it twice finds it once
+	public double distance(Virus virusB, int ancestor) {
+		if (ancestor != Genealogy.NONE) {
+			double distA = getBirth() - Genealogy.getBirth(ancestor);
+			double distB = virusB.getBirth() - Genealogy.getBirth(ancestor);
 			return distA + distB;
 		}
 		else {
@@ -167,56 +144,61 @@ public class Virus {
 	}
 	
 	public double antigenicDistance(Virus virusB) {
-		return phenotype.distance(virusB.getPhenotype());
+		return getPhenotype().distance(virusB.getPhenotype());
 	}	
 	
 	// is there a coalescence event within x amount of time? (measured in years)
+	// each lineage walks back through its ancestors, going on while the ancestor reached is younger than the window,
+	// and the two coalesce if the walks meet, so they meet at their lowest shared ancestor above both viruses or not at all
+	// that ancestor is reached by a walk if the ancestor just below it is the virus itself or younger than the window,
+	// found with the jump pointers of Genealogy, without allocating
 	public double coalescence(Virus virusB, double windowTime) {
+		if (windowTime <= 0.0) {
+			return 0.0;
+		}
+		return coalescence(virusB, windowTime, Genealogy.commonAncestor(node, virusB.node));
+	}
 
-		Virus lineageA = this;
-		Virus lineageB = virusB;
-		Set<Virus> ancestry = new HashSet<>();
-		double success = 0.0;
-		
-		double startTime = lineageA.getBirth();
-		double time = startTime;
-		while (time > startTime - windowTime) {
-			if (lineageA.getParent() != null) {		
-				lineageA = lineageA.getParent();
-				time = lineageA.getBirth();
-				ancestry.add(lineageA);
-			}
-			else {
-				break;
-			}
+	// coalescence through ancestor, the common ancestor of this and virusB
+	public double coalescence(Virus virusB, double windowTime, int ancestor) {
+
+		if (windowTime <= 0.0) {
+			return 0.0;
 		}
-		
-		startTime = lineageB.getBirth();
-		time = startTime;
-		while (time > startTime - windowTime) {
-			if (lineageB.getParent() != null) {		
-				lineageB = lineageB.getParent();
-				time = lineageB.getBirth();				
-				if (!ancestry.add(lineageB)) { 
-					success = 1.0;
-					break; 
-				}
-			}
-			else {
-				break;
-			}			
+		if (ancestor == node || ancestor == virusB.node) {
+			ancestor = Genealogy.getParent(ancestor);
 		}
-		
-		return success;	
+		if (ancestor == Genealogy.NONE) {
+			return 0.0;
+		}
+		if (reaches(node, ancestor, windowTime) && reaches(virusB.node, ancestor, windowTime)) {
+			return 1.0;
+		}
+		return 0.0;
 
 	}	
 	
+	// whether a walk back from node over windowTime reaches its ancestor, as in coalescence
+	private static boolean reaches(int node, int ancestor, double windowTime) {
+		int below = Genealogy.getAncestor(node, Genealogy.getDepth(ancestor) + 1);
+		return below == node || Genealogy.getBirth(below) > Genealogy.getBirth(node) - windowTime;
+	}
+	
 	// this is the interval from this virus's birth back to its parent's birth
 	public double serialInterval() {
 		Virus p = getParent();
 		return getBirth() - p.getBirth();
 	}
 	
+	// views of the same node are equal
+	public boolean equals(Object o) {
+		return o instanceof Virus && ((Virus) o).node == node;
+	}
+	
+	public int hashCode() {
+		return node;
+	}
+	
 	public String toString() {
 		return Integer.toHexString(this.hashCode());
 	}
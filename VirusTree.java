@@ -302,126 +302,51 @@ public class VirusTree {
 
 	}
 
-	// rotate the 2d euclidean space using PCA, returning an x-axis with maximum
+	// rotate the euclidean space using PCA, returning an x-axis with maximum
 	// variance
+	// only spaces of 2 or 3 dimensions are rotated, higher dimensional ones are left as they are
 	public static void rotate() {
 
-		if (Parameters.phenotypeSpace.equals("geometric")) {
-
-			// load a 2d array with phenotypes
-
-			List<Virus> virusList = postOrderNodes();
-			int n = virusList.size();
-			int m = 2;
-
-			double[][] input = new double[n][m];
-
-			for (int i = 0; i < n; i++) {
-				Virus v = virusList.get(i);
-				GeometricPhenotype p = (GeometricPhenotype) v.getPhenotype();
-				double x = p.getTraitA();
-				double y = p.getTraitB();
-				input[i][0] = x;
-				input[i][1] = y;
-			}
-
-			// project this array
-
-			double[][] projected = SimplePCA.project(input);
-
-			// reset phenotypes based on projection
-
-			for (int i = 0; i < n; i++) {
-				Virus v = virusList.get(i);
-				GeometricPhenotype p = (GeometricPhenotype) v.getPhenotype();
-				double x = projected[i][0];
-				double y = projected[i][1];
-				p.setTraitA(x);
-				p.setTraitB(y);
-			}
+		// load a 2d array with phenotypes
 
+		List<Virus> virusList = postOrderNodes();
+		int n = virusList.size();
+		int m = virusList.get(0).getPhenotype().dimensions();
+		if (m != 2 && m != 3) {
+			return;
 		}
 
-		if (Parameters.phenotypeSpace.equals("geometricSeq")) {
-
-			// load a 2d array with phenotypes
-
-			List<Virus> virusList = postOrderNodes();
-			int n = virusList.size();
-			int m = 2;
-
-			double[][] input = new double[n][m];
-
-			for (int i = 0; i < n; i++) {
-				Virus v = virusList.get(i);
-				GeometricSeqPhenotype p = (GeometricSeqPhenotype) v.getPhenotype();
-				double x = p.getTraitA();
-				double y = p.getTraitB();
-				input[i][0] = x;
-				input[i][1] = y;
-			}
-
-			// project this array
-
-			double[][] projected = SimplePCA.project(input);
-
-			// reset phenotypes based on projection
+		double[][] input = new double[n][m];
 
-			for (int i = 0; i < n; i++) {
-				Virus v = virusList.get(i);
-				GeometricSeqPhenotype p = (GeometricSeqPhenotype) v.getPhenotype();
-				double x = projected[i][0];
-				double y = projected[i][1];
-				p.setTraitA(x);
-				p.setTraitB(y);
+		for (int i = 0; i < n; i++) {
+			Phenotype p = virusList.get(i).getPhenotype();
+			for (int j = 0; j < m; j++) {
+				input[i][j] = p.getTrait(j);
 			}
-
 		}
 
-		if (Parameters.phenotypeSpace.equals("geometric3d")) {
-
-			// load a 2d array with phenotypes
-
-			List<Virus> virusList = postOrderNodes();
-			int n = virusList.size();
-			int m = 3;
+		// project this array
 
-			double[][] input = new double[n][m];
-
-			for (int i = 0; i < n; i++) {
-				Virus v = virusList.get(i);
-				GeometricPhenotype3D p = (GeometricPhenotype3D) v.getPhenotype();
-				double x = p.getTraitA();
-				double y = p.getTraitB();
-				double z = p.getTraitC();
-				input[i][0] = x;
-				input[i][1] = y;
-				input[i][2] = z;
-			}
-
-			// project this array
-
-			double[][] projected = SimplePCA.project3D(input);
+		double[][] projected;
+		if (m == 2) {
+			projected = SimplePCA.project(input);
+		} else {
+			projected = SimplePCA.project3D(input);
+		}
 
-			// reset phenotypes based on projection
+		// reset phenotypes based on projection
 
-			for (int i = 0; i < n; i++) {
-				Virus v = virusList.get(i);
-				GeometricPhenotype3D p = (GeometricPhenotype3D) v.getPhenotype();
-				double x = projected[i][0];
-				double y = projected[i][1];
-				double z = projected[i][2];
-				p.setTraitA(x);
-				p.setTraitB(y);
-				p.setTraitC(z);
+		for (int i = 0; i < n; i++) {
+			Phenotype p = virusList.get(i).getPhenotype();
+			for (int j = 0; j < m; j++) {
+				p.setTrait(projected[i][j], j);
 			}
-
 		}
 
 	}
 
-	// flips the 2d euclidean space so that first sample is always to the left of
-	// the last sample
+	// flips the euclidean space so that first sample is always to the left of
+	// the last sample, for the same spaces as rotate
 	public static void flip() {
 		List<Virus> virusList = postOrderNodes();
 
@@ -444,101 +369,29 @@ public class VirusTree {
 			}
 		}
 
-		if (Parameters.phenotypeSpace.equals("geometric")) {
-
-			// is the x-value of first virus greater than the x-value of last virus?
-			// if so, flip
-
-			GeometricPhenotype p = (GeometricPhenotype) firstVirus.getPhenotype();
-			double firstX = p.getTraitA();
-			p = (GeometricPhenotype) lastVirus.getPhenotype();
-			double lastX = p.getTraitA();
-
-			if (firstX > lastX) {
-
-				// I think that postOrderNodes() has replicates in it, need to go through some
-				// hoops because of this
-				double[] input = new double[n];
-
-				for (int i = 0; i < n; i++) {
-					Virus v = virusList.get(i);
-					p = (GeometricPhenotype) v.getPhenotype();
-					input[i] = p.getTraitA();
-				}
-
-				for (int i = 0; i < n; i++) {
-					Virus v = virusList.get(i);
-					p = (GeometricPhenotype) v.getPhenotype();
-					double x = -1 * input[i];
-					p.setTraitA(x);
-				}
-
-			}
-
+		int m = firstVirus.getPhenotype().dimensions();
+		if (m != 2 && m != 3) {
+			return;
 		}
 
-		if (Parameters.phenotypeSpace.equals("geometricSeq")) {
-
-			// is the x-value of first virus greater than the x-value of last virus?
-			// if so, flip
+		// is the x-value of first virus greater than the x-value of last virus?
+		// if so, flip
 
-			GeometricSeqPhenotype p = (GeometricSeqPhenotype) firstVirus.getPhenotype();
-			double firstX = p.getTraitA();
-			p = (GeometricSeqPhenotype) lastVirus.getPhenotype();
-			double lastX = p.getTraitA();
+		double firstX = firstVirus.getPhenotype().getTrait(0);
+		double lastX = lastVirus.getPhenotype().getTrait(0);
 
-			if (firstX > lastX) {
+		if (firstX > lastX) {
 
-				// I think that postOrderNodes() has replicates in it, need to go through some
-				// hoops because of this
-				double[] input = new double[n];
-
-				for (int i = 0; i < n; i++) {
-					Virus v = virusList.get(i);
-					p = (GeometricSeqPhenotype) v.getPhenotype();
-					input[i] = p.getTraitA();
-				}
-
-				for (int i = 0; i < n; i++) {
-					Virus v = virusList.get(i);
-					p = (GeometricSeqPhenotype) v.getPhenotype();
-					double x = -1 * input[i];
-					p.setTraitA(x);
-				}
+			// I think that postOrderNodes() has replicates in it, need to go through some
+			// hoops because of this
+			double[] input = new double[n];
 
+			for (int i = 0; i < n; i++) {
+				input[i] = virusList.get(i).getPhenotype().getTrait(0);
 			}
 
-		}
-
-		if (Parameters.phenotypeSpace.equals("geometric3d")) {
-
-			// is the x-value of first virus greater than the x-value of last virus?
-			// if so, flip
-
-			GeometricPhenotype3D p = (GeometricPhenotype3D) firstVirus.getPhenotype();
-			double firstX = p.getTraitA();
-			p = (GeometricPhenotype3D) lastVirus.getPhenotype();
-			double lastX = p.getTraitA();
-
-			if (firstX > lastX) {
-
-				// I think that postOrderNodes() has replicates in it, need to go through some
-				// hoops because of this
-				double[] input = new double[n];
-
-				for (int i = 0; i < n; i++) {
-					Virus v = virusList.get(i);
-					p = (GeometricPhenotype3D) v.getPhenotype();
-					input[i] = p.getTraitA();
-				}
-
-				for (int i = 0; i < n; i++) {
-					Virus v = virusList.get(i);
-					p = (GeometricPhenotype3D) v.getPhenotype();
-					double x = -1 * input[i];
-					p.setTraitA(x);
-				}
-
+			for (int i = 0; i < n; i++) {
+				virusList.get(i).getPhenotype().setTrait(-1 * input[i], 0);
 			}
 
 		}
@@ -546,6 +399,7 @@ public class VirusTree {
 	}
 
 	// walks through list of nodes and update min and max ranges appropriately
+	// z is only tracked for spaces of 3 or more dimensions
 	public static void updateRange() {
 
 		xMin = 0.0;
@@ -557,29 +411,16 @@ public class VirusTree {
 
 		for (Virus v : postOrderNodes()) {
 			Phenotype p = v.getPhenotype();
-			double x = 0.0;
-			double y = 0.0;
-			switch (Parameters.phenotypeSpace) {
-				case "geometric":
-					x = ((GeometricPhenotype) p).getTraitA();
-					y = ((GeometricPhenotype) p).getTraitB();
-					break;
-				case "geometricSeq":
-					x = ((GeometricSeqPhenotype) p).getTraitA();
-					y = ((GeometricSeqPhenotype) p).getTraitB();
-					break;
-				case "geometric3d":
-					double z = ((GeometricPhenotype3D) p).getTraitC();
-					if (zMin > z) {
-						zMin = z;
-					}
-					if (zMax < z) {
-						zMax = z;
-					}
-					break;
+			updateRangeHelper(p.getTrait(0), p.getTrait(1));
+			if (p.dimensions() >= 3) {
+				double z = p.getTrait(2);
+				if (zMin > z) {
+					zMin = z;
+				}
+				if (zMax < z) {
+					zMax = z;
+				}
 			}
-
-			updateRangeHelper(x, y);
 		}
 
 		xMin = Math.floor(xMin) - 10;